@@ -0,0 +1,171 @@
+package sky.pro.telegrambot2.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import sky.pro.telegrambot2.enam.IngestionMode;
+import sky.pro.telegrambot2.model.ClusterNode;
+import sky.pro.telegrambot2.repository.ClusterLeaseRepository;
+import sky.pro.telegrambot2.repository.ClusterNodeRepository;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/* координация нескольких экземпляров бота через общую базу. Роли, которые должен выполнять один узел,
+ * распределяются арендами в cluster_leases, а чаты делятся на партиции, каждую из которых обрабатывает
+ * один живой узел из cluster_nodes. Вместо advisory locks используются строки аренды: advisory lock живет
+ * в сессии соединения из пула, а аренда переживает переподключения и сама истекает, если узел упал*/
+@Component
+public class ClusterCoordinator {
+    public static final String POLLING_LEASE = "polling";
+
+    private final ClusterNodeRepository clusterNodeRepository;
+    private final ClusterLeaseRepository clusterLeaseRepository;
+    private final String nodeId;
+    private final String nodeUrl;
+    private final long ttlSeconds;
+    private final long ttlNanos;
+    private final int partitions;
+    private final Set<String> leases;
+    private final Map<String, Long> leaseDeadlines = new ConcurrentHashMap<>();
+    private final Logger logger = LoggerFactory.getLogger(ClusterCoordinator.class);
+    private volatile ClusterNode[] partitionOwners = new ClusterNode[0];
+
+    public ClusterCoordinator(ClusterNodeRepository clusterNodeRepository,
+                              ClusterLeaseRepository clusterLeaseRepository,
+                              @Value("${cluster.node-id:}") String nodeId,
+                              @Value("${cluster.node-url:}") String nodeUrl,
+                              @Value("${cluster.node-ttl:PT15S}") Duration ttl,
+                              @Value("${cluster.partitions:64}") int partitions,
+                              @Value("${telegram.bot.ingestion-mode:POLLING}") IngestionMode ingestionMode) {
+        this.clusterNodeRepository = clusterNodeRepository;
+        this.clusterLeaseRepository = clusterLeaseRepository;
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        this.nodeUrl = nodeUrl.isBlank() ? null : nodeUrl;
+        this.ttlSeconds = ttl.getSeconds();
+        this.ttlNanos = ttl.toNanos();
+        this.partitions = partitions;
+        this.leases = ingestionMode == IngestionMode.POLLING
+                ? Set.of(POLLING_LEASE)
+                : Set.of();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /* интервал heartbeat должен быть в несколько раз меньше node-ttl, чтобы одна задержка не отдавала
+     * аренды и партиции другим узлам*/
+    @Scheduled(fixedDelayString = "${cluster.heartbeat-interval:5000}")
+    public void heartbeat() {
+        try {
+            clusterNodeRepository.heartbeat(nodeId, nodeUrl);
+            clusterNodeRepository.deleteDeadNodes(ttlSeconds);
+            assignPartitions(clusterNodeRepository.findLiveNodes(ttlSeconds));
+            for (String lease : leases) {
+                long startedAt = System.nanoTime();
+                if (clusterLeaseRepository.tryAcquire(lease, nodeId, ttlSeconds) == 1) {
+                    if (leaseDeadlines.put(lease, startedAt + ttlNanos) == null) {
+                        logger.info("Node {} acquired {} lease", nodeId, lease);
+                    }
+                } else if (leaseDeadlines.remove(lease) != null) {
+                    logger.info("Node {} lost {} lease", nodeId, lease);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Cluster heartbeat failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /* аренда считается нашей только до локального дедлайна, посчитанного от начала последнего продления,
+     * поэтому узел, потерявший связь с базой, перестает считать себя лидером раньше, чем аренду заберут*/
+    public boolean isLeader(String lease) {
+        Long deadline = leaseDeadlines.get(lease);
+        if (deadline == null) {
+            return false;
+        }
+        if (System.nanoTime() - deadline < 0) {
+            return true;
+        }
+        leaseDeadlines.remove(lease, deadline);
+        return false;
+    }
+
+    /* url узла, которому принадлежит партиция чата, или пустой Optional, если чат обрабатывает этот узел.
+     * Пока состав кластера не известен, узел обрабатывает все чаты сам*/
+    public Optional<String> remoteOwnerUrl(Long chatId) {
+        ClusterNode[] owners = partitionOwners;
+        if (owners.length == 0) {
+            return Optional.empty();
+        }
+        ClusterNode owner = owners[partitionOf(chatId)];
+        return nodeId.equals(owner.getNodeId()) ? Optional.empty() : Optional.of(owner.getUrl());
+    }
+
+    int partitionOf(Long chatId) {
+        return (int) Math.floorMod(mix(chatId), (long) partitions);
+    }
+
+    /* партиции раздаются rendezvous-хешированием: каждая партиция достается узлу с наибольшим весом
+     * hash(узел, партиция). Когда узел уходит, переезжают только его партиции. Участвуют узлы, у которых
+     * задан url, иначе им нельзя переслать апдейт*/
+    void assignPartitions(List<ClusterNode> liveNodes) {
+        List<ClusterNode> candidates = liveNodes.stream()
+                .filter(node -> node.getUrl() != null)
+                .collect(Collectors.toList());
+        ClusterNode[] owners = new ClusterNode[candidates.isEmpty() ? 0 : partitions];
+        for (int partition = 0; partition < owners.length; partition++) {
+            long bestWeight = Long.MIN_VALUE;
+            for (ClusterNode node : candidates) {
+                long weight = mix(node.getNodeId().hashCode() * 31L + partition);
+                if (owners[partition] == null || weight > bestWeight) {
+                    owners[partition] = node;
+                    bestWeight = weight;
+                }
+            }
+        }
+        int before = countOwned(partitionOwners);
+        int after = countOwned(owners);
+        partitionOwners = owners;
+        if (before != after) {
+            logger.info("Node {} now owns {} of {} partitions ({} live nodes)", nodeId, after, owners.length,
+                    candidates.size());
+        }
+    }
+
+    private int countOwned(ClusterNode[] owners) {
+        int owned = 0;
+        for (ClusterNode owner : owners) {
+            if (nodeId.equals(owner.getNodeId())) {
+                owned++;
+            }
+        }
+        return owned;
+    }
+
+    /* финализатор splitmix64: соседние chatId и номера партиций дают независимые веса*/
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    /* при штатной остановке узел сразу отдает аренды и выходит из кластера, не дожидаясь истечения node-ttl*/
+    @PreDestroy
+    public void leave() {
+        try {
+            for (String lease : leaseDeadlines.keySet()) {
+                clusterLeaseRepository.release(lease, nodeId);
+            }
+            leaseDeadlines.clear();
+            clusterNodeRepository.deleteById(nodeId);
+        } catch (Exception e) {
+            logger.warn("Node {} could not leave cluster cleanly: {}", nodeId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package sky.pro.telegrambot2.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* пересылает апдейт, пришедший на webhook не тому узлу, узлу-владельцу партиции его чата.
+ * Пересылка идет в своем небольшом пуле потоков с ограниченной очередью, поэтому поток, принявший
+ * запрос Telegram, не ждет ответа другого узла*/
+@Component
+public class WebhookForwarder {
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+    private final RestTemplate restTemplate;
+    private final String webhookPath;
+    private final ExecutorService executor;
+    private final Logger logger = LoggerFactory.getLogger(WebhookForwarder.class);
+
+    public WebhookForwarder(RestTemplateBuilder restTemplateBuilder,
+                            @Value("${telegram.bot.webhook.path:/telegram/webhook}") String webhookPath,
+                            @Value("${cluster.forward-threads:4}") int threads,
+                            @Value("${cluster.forward-queue-capacity:1000}") int queueCapacity) {
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofSeconds(1))
+                .setReadTimeout(Duration.ofSeconds(2))
+                .build();
+        this.webhookPath = webhookPath;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "webhook-forward-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /* ставит пересылку в очередь и сразу возвращает управление. false, если очередь пересылки заполнена,
+     * тогда Telegram получает ошибку и повторит доставку. Если владелец не принял апдейт, вызывается
+     * onFailure: апдейт уже подтвержден Telegram, и его нужно обработать на этом узле*/
+    public boolean forwardAsync(String ownerUrl, String secretHeader, String secretToken, String body,
+                                Runnable onFailure) {
+        try {
+            executor.execute(() -> {
+                if (!forward(ownerUrl, secretHeader, secretToken, body)) {
+                    onFailure.run();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.warn("Forward queue is full, update to {} rejected", ownerUrl);
+            return false;
+        }
+    }
+
+    /* false, если владелец не принял апдейт*/
+    boolean forward(String ownerUrl, String secretHeader, String secretToken, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(secretHeader, secretToken);
+        headers.set(FORWARDED_HEADER, "true");
+        try {
+            return restTemplate.postForEntity(ownerUrl + webhookPath, new HttpEntity<>(body, headers), Void.class)
+                    .getStatusCode().is2xxSuccessful();
+        } catch (RestClientException e) {
+            logger.warn("Failed to forward update to {}: {}", ownerUrl, e.getMessage());
+            return false;
+        }
+    }
+}
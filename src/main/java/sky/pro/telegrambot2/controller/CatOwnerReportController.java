@@ -6,18 +6,35 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springdoc.api.annotations.ParameterObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import sky.pro.telegrambot2.enam.ExportFormat;
 import sky.pro.telegrambot2.exception.NotFoundException;
-import sky.pro.telegrambot2.model.DogOwnerReport;
+import sky.pro.telegrambot2.exception.WrongInputDataException;
 import sky.pro.telegrambot2.model.ErrorDetails;
+import sky.pro.telegrambot2.model.ReportPhoto;
+import sky.pro.telegrambot2.model.ReportSummary;
 import sky.pro.telegrambot2.service.CatOwnerReportService;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
 @RestController
 @RequestMapping("cat-reports")
 public class CatOwnerReportController {
@@ -26,29 +43,99 @@ public class CatOwnerReportController {
     public CatOwnerReportController(CatOwnerReportService reportService) {
         this.reportService = reportService;
     }
-    @Operation(summary = "Search cat owner report by cat owner id",
+    @Operation(summary = "Search cat owner reports by cat owner id",
             responses = {
                     @ApiResponse(
                             responseCode = "202",
-                            description = "Found report",
+                            description = "Found reports page",
                             content = @Content(
                                     mediaType = MediaType.APPLICATION_JSON_VALUE,
-                                    schema = @Schema(implementation = DogOwnerReport.class))
+                                    schema = @Schema(implementation = ReportSummary.class))
                     ),
                     @ApiResponse(
                             responseCode = "400",
-                            description = "Cat owner report with this owner id not found!")
+                            description = "Unknown sort property")
             },
             tags = "Cat owner report"
     )
     @GetMapping(value = "/{ownerId}")
     public ResponseEntity<?> findReportsByOwnerId(@Parameter(description = "Owner's id", example = "1")
-                                                  @PathVariable(required = false) Integer ownerId) {
+                                                  @PathVariable(required = false) Integer ownerId,
+                                                  @ParameterObject
+                                                  @PageableDefault(size = 20, sort = "date",
+                                                          direction = Sort.Direction.DESC) Pageable pageable) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(reportService.findReportSummariesByOwnerId(ownerId, pageable));
+        } catch (WrongInputDataException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorDetails("Reports can be sorted only by id, date, text and photoSize"));
+        }
+    }
+
+    /* выгрузка отчетов за период для волонтеров. Тело пишется в ответ по мере чтения из базы
+     * в потоке MVC async, поэтому размер выгрузки не влияет на потребление памяти*/
+    @Operation(summary = "Export cat owner reports for the period",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Reports in CSV or NDJSON")
+            },
+            tags = "Cat owner report"
+    )
+    @GetMapping(value = "/export")
+    public ResponseEntity<StreamingResponseBody> exportReports(@Parameter(description = "First day", example = "2023-01-01")
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                               LocalDate from,
+                                                               @Parameter(description = "Last day", example = "2023-12-31")
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                               LocalDate to,
+                                                               @RequestParam(defaultValue = "CSV") ExportFormat format) {
+        StreamingResponseBody body = out -> reportService.exportReports(from.atStartOfDay(),
+                to.plusDays(1).atStartOfDay(), format, out);
+        String fileName = "cat-reports-" + from + "-" + to + (format == ExportFormat.CSV ? ".csv" : ".ndjson");
+        return ResponseEntity.ok()
+                .contentType(format == ExportFormat.CSV
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : new MediaType("application", "x-ndjson", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(fileName).build().toString())
+                .body(body);
+    }
+
+    /* ETag - sha-256 содержимого, поэтому условные запросы (If-None-Match, If-Modified-Since) и
+     * Range для BlobResource Spring MVC обрабатывает сам, не читая фото целиком*/
+    @Operation(summary = "Download photo of cat owner report",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Report photo",
+                            content = @Content(mediaType = MediaType.IMAGE_JPEG_VALUE)
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Photo of this report not found!")
+            },
+            tags = "Cat owner report"
+    )
+    @GetMapping(value = "/photo/{reportId}")
+    public ResponseEntity<?> downloadPhoto(@Parameter(description = "Report's id", example = "1")
+                                           @PathVariable Integer reportId) {
         try {
-            return ResponseEntity.status(HttpStatus.ACCEPTED).body(reportService.findReportsByOwnerId(ownerId));
+            ReportPhoto photo = reportService.findPhotoByReportId(reportId);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .eTag(photo.getKey())
+                    .cacheControl(CacheControl.noCache())
+                    .contentType(photo.getMimeType() != null
+                            ? MediaType.parseMediaType(photo.getMimeType())
+                            : MediaType.APPLICATION_OCTET_STREAM);
+            if (photo.getLastModified() != null) {
+                response.lastModified(photo.getLastModified().atZone(ZoneId.systemDefault()));
+            }
+            return response.body(reportService.openPhoto(photo));
         } catch (NotFoundException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(new ErrorDetails("Reports with this cat owner id not found!"));
+                    .body(new ErrorDetails("Photo of this report not found!"));
         }
     }
 }
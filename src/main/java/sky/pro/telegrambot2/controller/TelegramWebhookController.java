@@ -0,0 +1,99 @@
+package sky.pro.telegrambot2.controller;
+
+import com.google.gson.JsonParseException;
+import com.pengrad.telegrambot.BotUtils;
+import com.pengrad.telegrambot.model.Update;
+import io.swagger.v3.oas.annotations.Hidden;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import sky.pro.telegrambot2.cluster.ClusterCoordinator;
+import sky.pro.telegrambot2.cluster.WebhookForwarder;
+import sky.pro.telegrambot2.listener.UpdateDispatcher;
+import sky.pro.telegrambot2.listener.WebhookUpdateQueue;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Optional;
+
+/* прием апдейтов в режиме webhook. Запрос принимается, только если в заголовке пришел секрет,
+ * переданный в setWebhook как secret_token. Апдейт чата из чужой партиции пересылается узлу-владельцу,
+ * поэтому апдейты одного чата обрабатывает один узел кластера*/
+@Hidden
+@RestController
+@ConditionalOnProperty(name = "telegram.bot.ingestion-mode", havingValue = "WEBHOOK")
+public class TelegramWebhookController {
+    static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final WebhookUpdateQueue webhookUpdateQueue;
+    private final ClusterCoordinator clusterCoordinator;
+    private final WebhookForwarder webhookForwarder;
+    private final String secretToken;
+    private final byte[] secretTokenBytes;
+    private final Logger logger = LoggerFactory.getLogger(TelegramWebhookController.class);
+
+    public TelegramWebhookController(WebhookUpdateQueue webhookUpdateQueue,
+                                     ClusterCoordinator clusterCoordinator,
+                                     WebhookForwarder webhookForwarder,
+                                     @Value("${telegram.bot.webhook.secret-token:}") String secretToken) {
+        if (secretToken.isBlank()) {
+            throw new IllegalStateException("telegram.bot.webhook.secret-token must be set in WEBHOOK mode");
+        }
+        this.webhookUpdateQueue = webhookUpdateQueue;
+        this.clusterCoordinator = clusterCoordinator;
+        this.webhookForwarder = webhookForwarder;
+        this.secretToken = secretToken;
+        this.secretTokenBytes = secretToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /* пересланный апдейт обрабатывается на месте, даже если состав кластера на узлах еще не сошелся,
+     * чтобы апдейт не ходил по кругу*/
+    @PostMapping("${telegram.bot.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> receiveUpdate(@RequestHeader(value = SECRET_TOKEN_HEADER, required = false) String token,
+                                              @RequestHeader(value = WebhookForwarder.FORWARDED_HEADER,
+                                                      required = false) boolean forwarded,
+                                              @RequestBody String body) {
+        if (token == null || !MessageDigest.isEqual(secretTokenBytes, token.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Update update;
+        try {
+            update = BotUtils.parseUpdate(body);
+        } catch (JsonParseException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        if (update == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        if (!forwarded) {
+            Optional<String> ownerUrl = clusterCoordinator.remoteOwnerUrl(UpdateDispatcher.chatIdOf(update));
+            /* пересылка идет в фоне. Если владелец апдейт не принял, он обрабатывается на этом узле:
+             * Telegram его уже не повторит, а дубликаты отсеет UpdateDeduplicator*/
+            if (ownerUrl.isPresent()) {
+                return webhookForwarder.forwardAsync(ownerUrl.get(), SECRET_TOKEN_HEADER, secretToken, body,
+                        () -> processLocally(update))
+                        ? ResponseEntity.ok().build()
+                        : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+        }
+        /* очередь заполнена - Telegram повторит доставку этого апдейта позже*/
+        if (!webhookUpdateQueue.offer(update)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    private void processLocally(Update update) {
+        if (!webhookUpdateQueue.offer(update)) {
+            logger.error("Update {} was not forwarded and the local queue is full, update is lost",
+                    update.updateId());
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package sky.pro.telegrambot2.enam;
+
+public enum OutboxStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,6 @@
+package sky.pro.telegrambot2.enam;
+
+public enum ShelterType {
+    DOG,
+    CAT
+}
@@ -0,0 +1,35 @@
+package sky.pro.telegrambot2.enam;
+
+import com.pengrad.telegrambot.model.Update;
+
+import java.util.function.Predicate;
+
+/* вид апдейта, по которому выбираются обработчики. Чтобы бот начал обрабатывать новый вид
+ * апдейтов, достаточно описать его здесь и зарегистрировать бин Handler с этим типом.
+ * Апдейт относится к первому подходящему виду в порядке объявления*/
+public enum UpdateType {
+    CALLBACK_QUERY(update -> update.callbackQuery() != null),
+    TEXT(update -> update.message() != null && update.message().text() != null),
+    PHOTO(update -> update.message() != null && update.message().photo() != null),
+    DOCUMENT(update -> update.message() != null && update.message().document() != null),
+    LOCATION(update -> update.message() != null && update.message().location() != null),
+    EDITED_MESSAGE(update -> update.editedMessage() != null);
+
+    private static final UpdateType[] TYPES = values();
+
+    private final Predicate<Update> matcher;
+
+    UpdateType(Predicate<Update> matcher) {
+        this.matcher = matcher;
+    }
+
+    /* null, если апдейт не относится ни к одному виду*/
+    public static UpdateType of(Update update) {
+        for (UpdateType type : TYPES) {
+            if (type.matcher.test(update)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,45 @@
+package sky.pro.telegrambot2.event;
+
+import sky.pro.telegrambot2.enam.ProbationaryStatus;
+import sky.pro.telegrambot2.enam.ShelterType;
+
+/* волонтер сменил овнеру статус испытательного срока. Публикуется внутри транзакции смены статуса*/
+public class ProbationaryStatusChangedEvent {
+    private final ShelterType shelterType;
+    private final Integer ownerId;
+    private final Long chatId;
+    private final ProbationaryStatus status;
+    private final int periodExtend;
+
+    public ProbationaryStatusChangedEvent(ShelterType shelterType,
+                                          Integer ownerId,
+                                          Long chatId,
+                                          ProbationaryStatus status,
+                                          int periodExtend) {
+        this.shelterType = shelterType;
+        this.ownerId = ownerId;
+        this.chatId = chatId;
+        this.status = status;
+        this.periodExtend = periodExtend;
+    }
+
+    public ShelterType getShelterType() {
+        return shelterType;
+    }
+
+    public Integer getOwnerId() {
+        return ownerId;
+    }
+
+    public Long getChatId() {
+        return chatId;
+    }
+
+    public ProbationaryStatus getStatus() {
+        return status;
+    }
+
+    public int getPeriodExtend() {
+        return periodExtend;
+    }
+}
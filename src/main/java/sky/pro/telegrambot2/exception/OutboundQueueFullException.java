@@ -0,0 +1,4 @@
+package sky.pro.telegrambot2.exception;
+
+public class OutboundQueueFullException extends RuntimeException {
+}
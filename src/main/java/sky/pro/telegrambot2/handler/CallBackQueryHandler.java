@@ -1,29 +1,56 @@
 package sky.pro.telegrambot2.handler;
 
-import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.CallbackQuery;
 import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.request.SendMessage;
-import com.pengrad.telegrambot.request.SendPhoto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import sky.pro.telegrambot2.enam.UpdateType;
 import sky.pro.telegrambot2.keyboard.Button;
 import sky.pro.telegrambot2.keyboard.InlineKeyboard;
-import sky.pro.telegrambot2.model.UserContext;
-import sky.pro.telegrambot2.repository.UserContextRepository;
-
-import java.io.IOException;
-import java.net.URISyntaxException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import sky.pro.telegrambot2.sender.MessageSender;
+import sky.pro.telegrambot2.service.StaticMediaService;
+import sky.pro.telegrambot2.service.UserContextService;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
+/* обработчик нажатий на кнопки. Таблица маршрутов callback data -> действие строится один раз при
+ * создании бина, поэтому выбор действия - один поиск в хэш таблице. Время выполнения каждого маршрута
+ * пишется в таймер bot.callback, нажатия на неизвестные кнопки считаются в bot.callback.unknown*/
+@Component
 public class CallBackQueryHandler implements Handler {
-    private final TelegramBot telegramBot;
-    private final UserContextRepository userContextRepository;
+    private final MessageSender messageSender;
+    private final UserContextService userContextService;
+    private final InlineKeyboard infoKeyboard;
+    private final StaticMediaService staticMediaService;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Route> routes;
+    private final Counter unknownCallbacks;
+    private final Logger logger = LoggerFactory.getLogger(CallBackQueryHandler.class);
+
+    public CallBackQueryHandler(MessageSender messageSender,
+                                UserContextService userContextService,
+                                InlineKeyboard infoKeyboard,
+                                StaticMediaService staticMediaService,
+                                MeterRegistry meterRegistry) {
+        this.messageSender = messageSender;
+        this.userContextService = userContextService;
+        this.infoKeyboard = infoKeyboard;
+        this.staticMediaService = staticMediaService;
+        this.meterRegistry = meterRegistry;
+        this.unknownCallbacks = meterRegistry.counter("bot.callback.unknown");
+        this.routes = buildRoutes();
+    }
 
-    public CallBackQueryHandler(TelegramBot telegramBot,
-                                UserContextRepository userContextRepository) {
-        this.telegramBot = telegramBot;
-        this.userContextRepository = userContextRepository;
+    @Override
+    public UpdateType getType() {
+        return UpdateType.CALLBACK_QUERY;
     }
 
     @Override
@@ -31,149 +58,74 @@ public class CallBackQueryHandler implements Handler {
         Long chatId = update.callbackQuery().from().id();
         CallbackQuery callbackQuery = update.callbackQuery();
         String data = callbackQuery.data();
-        InlineKeyboard infoKeyboard = new InlineKeyboard(telegramBot);
-        switch (data) {
-            case Button.button1_5:
-            case Button.button2_5:
-            case Button.button3_6:
-            case Button.button4_12:
-            case Button.button5_3:
-            case Button.button7_6:
-            case Button.button6_10: {
-                infoKeyboard.chooseShelterMenu(chatId);
-                break;
-            }
-            case Button.button1: {
-                infoKeyboard.showDogShelterMenu(chatId);
-                chooseDogShelter(chatId);
-                break;
-            }
-            case Button.button2: {
-                infoKeyboard.showCatShelterMenu(chatId);
-                chooseCatShelter(chatId);
-                break;
-            }
-            case Button.button1_1:{
-                infoKeyboard.showInfoDogShelterMenu(chatId);
-                break;
-            }
-            case Button.button1_2: {
-                infoKeyboard.showBureaucraticMenuAboutDogs(chatId);
-                break;
-            }
-            case Button.button1_3:
-            case Button.button2_3: {
-                infoKeyboard.showReportMenu(chatId);
-                break;
-            }
-            case Button.button1_4:
-            case Button.button2_4:
-            case Button.button3_5:
-            case Button.button5_4:
-            case Button.button6_9:
-            case Button.button7_5: {
-                callVolunteer(chatId);
-                break;
-            }
-            case Button.button2_1:{
-                infoKeyboard.showInfoCatShelterMenu(chatId);
-                break;
-            }
-            case Button.button2_2: {
-                infoKeyboard.showBureaucraticMenuAboutCats(chatId);
-                break;
-            }
-            case Button.button3_1:
-            case Button.button7_1: {
-                showInfoAboutShelter(chatId);
-                break;
-            }
-            case Button.button3_2: {
-                showContactInfoAboutDogShelter(chatId);
-                break;
-            }
-            case Button.button3_3:
-            case Button.button7_3: {
-                showSafetyAdvice(chatId);
-                break;
-            }
-            case Button.button3_4:
-            case Button.button6_8:
-            case Button.button7_4:
-            case Button.button4_10: {
-                saveContactDetails(chatId);
-                break;
-            }
-            case Button.button4_1: {
-                showDogDatingRules(chatId);
-                break;
-            }
-            case Button.button4_2:
-            case Button.button6_2: {
-                showListOfDocuments(chatId);
-                break;
-            }
-            case Button.button4_3:
-            case Button.button6_3: {
-                showTransportationAdvices(chatId);
-                break;
-            }
-            case Button.button4_4: {
-                showHomeImprovementTipsForPuppy(chatId);
-                break;
-            }
-            case Button.button4_5: {
-                showHomeImprovementTipsForDog(chatId);
-                break;
-            }
-            case Button.button6_6:
-            case Button.button4_6: {
-                showHomeImprovementTipsForPetWithDisability(chatId);
-                break;
-            }
-            case Button.button4_7: {
-                showDogHandlerAdvices(chatId);
-                break;
-            }
-            case Button.button4_8: {
-                showContactsOfDogHandlers(chatId);
-                break;
-            }
-            case Button.button6_7:
-            case Button.button4_9: {
-                showReasonsForRefusingToAdoptDog(chatId);
-                break;
-            }
-            case Button.button5_1: {
-                showDailyReportForm(chatId);
-                break;
-            }
-            case Button.button5_2: {
-                showSendReport(chatId);
-                break;
-            }
-            case Button.button6_1: {
-                showCatDatingRules(chatId);
-                break;
-            }
-            case Button.button6_4: {
-                showHomeImprovementTipsForKitty(chatId);
-                break;
-            }
-            case Button.button6_5: {
-                showHomeImprovementTipsForCat(chatId);
-                break;
-            }
-            case Button.button7_2: {
-                showContactInfoAboutCatShelter(chatId);
-                break;
+        Route route = data != null ? routes.get(data) : null;
+        if (route == null) {
+            unknownCallbacks.increment();
+            logger.warn("Unknown callback data: {}", data);
+            return;
+        }
+        route.timer.record(() -> route.action.accept(chatId));
+    }
+
+    /* новый экран добавляется одной строкой: имя маршрута, действие и кнопки, которые его вызывают*/
+    private Map<String, Route> buildRoutes() {
+        Map<String, Route> routes = new HashMap<>();
+        route(routes, "chooseShelterMenu", infoKeyboard::chooseShelterMenu,
+                Button.button1_5, Button.button2_5, Button.button3_6, Button.button4_12,
+                Button.button5_3, Button.button7_6, Button.button6_10);
+        route(routes, "dogShelterMenu", chatId -> {
+            infoKeyboard.showDogShelterMenu(chatId);
+            chooseDogShelter(chatId);
+        }, Button.button1);
+        route(routes, "catShelterMenu", chatId -> {
+            infoKeyboard.showCatShelterMenu(chatId);
+            chooseCatShelter(chatId);
+        }, Button.button2);
+        route(routes, "infoDogShelterMenu", infoKeyboard::showInfoDogShelterMenu, Button.button1_1);
+        route(routes, "bureaucraticMenuAboutDogs", infoKeyboard::showBureaucraticMenuAboutDogs, Button.button1_2);
+        route(routes, "reportMenu", infoKeyboard::showReportMenu, Button.button1_3, Button.button2_3);
+        route(routes, "callVolunteer", this::callVolunteer,
+                Button.button1_4, Button.button2_4, Button.button3_5, Button.button5_4,
+                Button.button6_9, Button.button7_5);
+        route(routes, "infoCatShelterMenu", infoKeyboard::showInfoCatShelterMenu, Button.button2_1);
+        route(routes, "bureaucraticMenuAboutCats", infoKeyboard::showBureaucraticMenuAboutCats, Button.button2_2);
+        route(routes, "infoAboutShelter", this::showInfoAboutShelter, Button.button3_1, Button.button7_1);
+        route(routes, "contactInfoAboutDogShelter", this::showContactInfoAboutDogShelter, Button.button3_2);
+        route(routes, "safetyAdvice", this::showSafetyAdvice, Button.button3_3, Button.button7_3);
+        route(routes, "saveContactDetails", this::saveContactDetails,
+                Button.button3_4, Button.button6_8, Button.button7_4, Button.button4_10);
+        route(routes, "dogDatingRules", this::showDogDatingRules, Button.button4_1);
+        route(routes, "listOfDocuments", this::showListOfDocuments, Button.button4_2, Button.button6_2);
+        route(routes, "transportationAdvices", this::showTransportationAdvices, Button.button4_3, Button.button6_3);
+        route(routes, "homeImprovementTipsForPuppy", this::showHomeImprovementTipsForPuppy, Button.button4_4);
+        route(routes, "homeImprovementTipsForDog", this::showHomeImprovementTipsForDog, Button.button4_5);
+        route(routes, "homeImprovementTipsForPetWithDisability", this::showHomeImprovementTipsForPetWithDisability,
+                Button.button6_6, Button.button4_6);
+        route(routes, "dogHandlerAdvices", this::showDogHandlerAdvices, Button.button4_7);
+        route(routes, "contactsOfDogHandlers", this::showContactsOfDogHandlers, Button.button4_8);
+        route(routes, "reasonsForRefusingToAdoptDog", this::showReasonsForRefusingToAdoptDog,
+                Button.button6_7, Button.button4_9);
+        route(routes, "dailyReportForm", this::showDailyReportForm, Button.button5_1);
+        route(routes, "sendReport", this::showSendReport, Button.button5_2);
+        route(routes, "catDatingRules", this::showCatDatingRules, Button.button6_1);
+        route(routes, "homeImprovementTipsForKitty", this::showHomeImprovementTipsForKitty, Button.button6_4);
+        route(routes, "homeImprovementTipsForCat", this::showHomeImprovementTipsForCat, Button.button6_5);
+        route(routes, "contactInfoAboutCatShelter", this::showContactInfoAboutCatShelter, Button.button7_2);
+        return Map.copyOf(routes);
+    }
+
+    private void route(Map<String, Route> routes, String name, Consumer<Long> action, String... callbacks) {
+        Route route = new Route(meterRegistry.timer("bot.callback", "route", name), action);
+        for (String callback : callbacks) {
+            if (routes.putIfAbsent(callback, route) != null) {
+                throw new IllegalStateException("Callback " + callback + " is already routed");
             }
         }
     }
 
     private void sendTextMessage(Long chatId, String text) {
         SendMessage sendMessage = new SendMessage(chatId, text);
-        telegramBot.execute(sendMessage);
+        messageSender.send(sendMessage);
     }
 
     private void showInfoAboutShelter(Long chatId) {
@@ -187,28 +139,17 @@ public class CallBackQueryHandler implements Handler {
                 "\nприютить больных или травмированных кошек и собак.");
     }
 
+    /* схема проезда отправляется через StaticMediaService, после первой отправки - по file_id*/
     private void showContactInfoAboutDogShelter(Long chatId) {
-        try {
-            byte[] drivingDirection = Files.readAllBytes(
-                    Paths.get(CallBackQueryHandler.class.getResource("/drivingDirection.jpg").toURI()));
-            SendPhoto sendPhoto = new SendPhoto(chatId, drivingDirection);
-            sendTextMessage(chatId, "Часы работы приюта Help Pets с 9:00 до 19:00 без выходных," +
-                    " приют расположен по адресу: Зубовский бульвар д.17 с.3");
-            telegramBot.execute(sendPhoto);
-        } catch (IOException | URISyntaxException e) {
-            throw new RuntimeException(e);
-        }
-    }  private void showContactInfoAboutCatShelter(Long chatId) {
-        try {
-            byte[] drivingDirection = Files.readAllBytes(
-                    Paths.get(CallBackQueryHandler.class.getResource("/drivingDirection2.png").toURI()));
-            SendPhoto sendPhoto = new SendPhoto(chatId, drivingDirection);
-            sendTextMessage(chatId, "Часы работы кошачьего приюта Help Pets с 9:00 до 19:00 без выходных," +
-                    " приют расположен по адресу: Лесная улица д.38");
-            telegramBot.execute(sendPhoto);
-        } catch (IOException | URISyntaxException e) {
-            throw new RuntimeException(e);
-        }
+        sendTextMessage(chatId, "Часы работы приюта Help Pets с 9:00 до 19:00 без выходных," +
+                " приют расположен по адресу: Зубовский бульвар д.17 с.3");
+        staticMediaService.sendPhoto(chatId, "drivingDirection.jpg");
+    }
+
+    private void showContactInfoAboutCatShelter(Long chatId) {
+        sendTextMessage(chatId, "Часы работы кошачьего приюта Help Pets с 9:00 до 19:00 без выходных," +
+                " приют расположен по адресу: Лесная улица д.38");
+        staticMediaService.sendPhoto(chatId, "DrivingDirection2.jpg");
     }
 
     private void showSafetyAdvice(Long chatId) {
@@ -352,17 +293,20 @@ public class CallBackQueryHandler implements Handler {
     }
 
     private void chooseDogShelter(Long chatId) {
-        UserContext userContext = new UserContext();
-        userContext.setChatId(chatId);
-        userContext.setDogShelter(true);
-        userContextRepository.save(userContext);
-
+        userContextService.chooseDogShelter(chatId);
     }
 
     private void chooseCatShelter(Long chatId) {
-        UserContext userContext = new UserContext();
-        userContext.setChatId(chatId);
-        userContext.setCatShelter(true);
-        userContextRepository.save(userContext);
+        userContextService.chooseCatShelter(chatId);
+    }
+
+    private static final class Route {
+        private final Timer timer;
+        private final Consumer<Long> action;
+
+        private Route(Timer timer, Consumer<Long> action) {
+            this.timer = timer;
+            this.action = action;
+        }
     }
 }
@@ -1,7 +1,12 @@
 package sky.pro.telegrambot2.handler;
 
 import com.pengrad.telegrambot.model.Update;
+import sky.pro.telegrambot2.enam.UpdateType;
 
+/* обработчики - синглтоны, которые одновременно вызываются из нескольких потоков диспетчера,
+ * поэтому они не должны хранить состояние между апдейтами*/
 public interface Handler {
+    UpdateType getType();
+
     void handle(Update update);
-}
\ No newline at end of file
+}
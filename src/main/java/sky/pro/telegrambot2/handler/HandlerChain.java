@@ -0,0 +1,39 @@
+package sky.pro.telegrambot2.handler;
+
+import com.pengrad.telegrambot.model.Update;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import sky.pro.telegrambot2.enam.UpdateType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/* цепочка обработчиков, собранная из всех бинов Handler и разложенная по типу апдейта.
+ * Тип апдейта определяется один раз, и апдейт передается обработчикам этого типа*/
+@Component
+public class HandlerChain {
+    private final Map<UpdateType, List<Handler>> handlers;
+    private final Logger logger = LoggerFactory.getLogger(HandlerChain.class);
+
+    public HandlerChain(List<Handler> handlers) {
+        Map<UpdateType, List<Handler>> byType = new EnumMap<>(UpdateType.class);
+        handlers.forEach(handler -> byType.computeIfAbsent(handler.getType(), type -> new ArrayList<>()).add(handler));
+        byType.replaceAll((type, typeHandlers) -> List.copyOf(typeHandlers));
+        this.handlers = Collections.unmodifiableMap(byType);
+        logger.info("Update handlers registered for {}", byType.keySet());
+    }
+
+    public void handle(Update update) {
+        UpdateType type = UpdateType.of(update);
+        List<Handler> typeHandlers = type != null ? handlers.get(type) : null;
+        if (typeHandlers == null) {
+            logger.debug("No handler for update {}", update.updateId());
+            return;
+        }
+        typeHandlers.forEach(handler -> handler.handle(update));
+    }
+}
@@ -1,119 +1,135 @@
 package sky.pro.telegrambot2.handler;
 
-import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.Message;
 import com.pengrad.telegrambot.model.PhotoSize;
 import com.pengrad.telegrambot.model.Update;
-import com.pengrad.telegrambot.request.GetFile;
 import com.pengrad.telegrambot.request.SendMessage;
-import com.pengrad.telegrambot.response.GetFileResponse;
+import org.springframework.stereotype.Component;
+import sky.pro.telegrambot2.enam.UpdateType;
 import sky.pro.telegrambot2.model.CatOwner;
-import sky.pro.telegrambot2.model.CatOwnerReport;
 import sky.pro.telegrambot2.model.DogOwner;
-import sky.pro.telegrambot2.model.DogOwnerReport;
+import sky.pro.telegrambot2.model.LastReport;
+import sky.pro.telegrambot2.sender.MessageSender;
 import sky.pro.telegrambot2.service.CatOwnerReportService;
 import sky.pro.telegrambot2.service.CatOwnerService;
 import sky.pro.telegrambot2.service.DogOwnerService;
 import sky.pro.telegrambot2.service.DogOwnerReportService;
+import sky.pro.telegrambot2.storage.IngestedPhoto;
+import sky.pro.telegrambot2.storage.PhotoIngestionService;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Optional;
 
+@Component
 public class ImageHandler implements Handler {
-    private final TelegramBot telegramBot;
+    private final PhotoIngestionService photoIngestionService;
+    private final MessageSender messageSender;
     private final DogOwnerService dogOwnerService;
     private final CatOwnerService catOwnerService;
     private final DogOwnerReportService dogOwnerReportService;
     private final CatOwnerReportService catOwnerReportService;
 
-    public ImageHandler(TelegramBot telegramBot,
+    public ImageHandler(PhotoIngestionService photoIngestionService,
+                        MessageSender messageSender,
                         DogOwnerService ownerService,
                         CatOwnerService catOwnerService,
                         DogOwnerReportService dogOwnerReportService,
                         CatOwnerReportService catOwnerReportService) {
-        this.telegramBot = telegramBot;
+        this.photoIngestionService = photoIngestionService;
+        this.messageSender = messageSender;
         this.dogOwnerService = ownerService;
         this.catOwnerService = catOwnerService;
         this.dogOwnerReportService = dogOwnerReportService;
         this.catOwnerReportService = catOwnerReportService;
     }
 
+    @Override
+    public UpdateType getType() {
+        return UpdateType.PHOTO;
+    }
+
+    /* фото скачивается только если отправитель владелец собаки или кошки, и только один раз:
+     * скачанный файл используется в отчетах обоих владельцев*/
     @Override
     public void handle(Update update) {
         Long chatId = update.message().chat().id();
         Message message = update.message();
-        LocalDateTime dateTimeNow = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
         PhotoSize photoSize = message.photo()[message.photo().length - 1];
-        GetFileResponse getFileResponse = telegramBot.execute(new GetFile(photoSize.fileId()));
 
         Optional<DogOwner> optDogOwner = dogOwnerService.findDogOwnerByChatId(chatId);
-        if (optDogOwner.isPresent()) {
-            DogOwner dogOwner = optDogOwner.get();
-            try {
-                Optional<DogOwnerReport> optDogOwnerReport =
-                        dogOwnerReportService.findLastReportByOwnerId(dogOwner.getId());
-                if (optDogOwnerReport.isPresent()) {
-                    DogOwnerReport dogOwnerReport = optDogOwnerReport.get();
-                    if (dateTimeNow.isBefore(dogOwnerReport.getDateOfLastReport().plusDays(1))) {
-                        dogOwnerReportService.saveImageInExistingReport(dogOwnerReport,
-                                telegramBot.getFileContent(getFileResponse.file()),
-                                dogOwner,
-                                LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES));
-                    } else if (dateTimeNow.isAfter(dogOwnerReport.getDateOfLastReport().plusDays(1))) {
-                        dogOwnerReportService.saveImageInNewReport(telegramBot.getFileContent(getFileResponse.file()),
-                                dogOwner,
-                                LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES));
-                    }
-                    sendInfoIfOnlyImageReportLoaded(optDogOwnerReport.get().getStringReport(),chatId);
-                } else {
-                    dogOwnerReportService.saveImageInNewReport(telegramBot.getFileContent(getFileResponse.file()),
-                            dogOwner,
-                            LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES));
-                    sendMessage(chatId, "Вы успешно загрузили фото отчет, " +
-                            " пожалуйста не забудьте загрузить текстовый отчет отчет");
-                }
-            } catch (IOException e) {
-                throw new RuntimeException();
+        Optional<CatOwner> optCatOwner = catOwnerService.findCatOwnerByChatId(chatId);
+        if (optDogOwner.isEmpty() && optCatOwner.isEmpty()) {
+            return;
+        }
+        try (IngestedPhoto photo = photoIngestionService.ingest(photoSize)) {
+            if (optDogOwner.isPresent()) {
+                saveDogOwnerImageReport(optDogOwner.get(), photo, chatId);
             }
+            if (optCatOwner.isPresent()) {
+                saveCatOwnerImageReport(optCatOwner.get(), photo, chatId);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
+    }
 
-        Optional<CatOwner> optCatOwner = catOwnerService.findCatOwnerByChatId(chatId);
-        if (optCatOwner.isPresent()) {
-            CatOwner catOwner = optCatOwner.get();
-            try {
-                Optional<CatOwnerReport> optCatOwnerReport =
-                        catOwnerReportService.findLastReportByOwnerId(catOwner.getId());
-                if (optCatOwnerReport.isPresent()) {
-                    CatOwnerReport catOwnerReport = optCatOwnerReport.get();
-                    if (dateTimeNow.isBefore(catOwnerReport.getDateOfLastReport().plusDays(1))) {
-                        catOwnerReportService.saveImageInExistingReport(catOwnerReport,
-                                telegramBot.getFileContent(getFileResponse.file()),
-                                catOwner,
-                                LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES));
-                    } else if (dateTimeNow.isAfter(catOwnerReport.getDateOfLastReport().plusDays(1))) {
-                        catOwnerReportService.saveImageInNewReport(telegramBot.getFileContent(getFileResponse.file()),
-                                catOwner,
-                                LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES));
-                    }
-                    sendInfoIfOnlyImageReportLoaded(optCatOwnerReport.get().getStringReport(),chatId);
-                } else {
-                    catOwnerReportService.saveImageInNewReport(telegramBot.getFileContent(getFileResponse.file()),
-                            catOwner,
-                            LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES));
-                    sendMessage(chatId, "Вы успешно загрузили фото отчет, " +
-                            " пожалуйста не забудьте загрузить текстовый отчет отчет");
-                }
-            } catch (IOException e) {
-                throw new RuntimeException();
+    private void saveDogOwnerImageReport(DogOwner dogOwner, IngestedPhoto photo, Long chatId) throws IOException {
+        LocalDateTime dateTimeNow = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        Optional<LastReport> optDogOwnerReport =
+                dogOwnerReportService.findLastReportByOwnerId(dogOwner.getId());
+        if (optDogOwnerReport.isPresent()) {
+            LastReport dogOwnerReport = optDogOwnerReport.get();
+            if (dateTimeNow.isBefore(dogOwnerReport.getDateOfLastReport().plusDays(1))) {
+                dogOwnerReportService.saveImageInExistingReport(dogOwnerReport,
+                        photo,
+                        dogOwner,
+                        dateTimeNow);
+            } else if (dateTimeNow.isAfter(dogOwnerReport.getDateOfLastReport().plusDays(1))) {
+                dogOwnerReportService.saveImageInNewReport(photo,
+                        dogOwner,
+                        dateTimeNow);
             }
+            sendInfoIfOnlyImageReportLoaded(dogOwnerReport.getStringReport(), chatId);
+        } else {
+            dogOwnerReportService.saveImageInNewReport(photo,
+                    dogOwner,
+                    dateTimeNow);
+            sendMessage(chatId, "Вы успешно загрузили фото отчет, " +
+                    " пожалуйста не забудьте загрузить текстовый отчет отчет");
+        }
+    }
+
+    private void saveCatOwnerImageReport(CatOwner catOwner, IngestedPhoto photo, Long chatId) throws IOException {
+        LocalDateTime dateTimeNow = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        Optional<LastReport> optCatOwnerReport =
+                catOwnerReportService.findLastReportByOwnerId(catOwner.getId());
+        if (optCatOwnerReport.isPresent()) {
+            LastReport catOwnerReport = optCatOwnerReport.get();
+            if (dateTimeNow.isBefore(catOwnerReport.getDateOfLastReport().plusDays(1))) {
+                catOwnerReportService.saveImageInExistingReport(catOwnerReport,
+                        photo,
+                        catOwner,
+                        dateTimeNow);
+            } else if (dateTimeNow.isAfter(catOwnerReport.getDateOfLastReport().plusDays(1))) {
+                catOwnerReportService.saveImageInNewReport(photo,
+                        catOwner,
+                        dateTimeNow);
+            }
+            sendInfoIfOnlyImageReportLoaded(catOwnerReport.getStringReport(), chatId);
+        } else {
+            catOwnerReportService.saveImageInNewReport(photo,
+                    catOwner,
+                    dateTimeNow);
+            sendMessage(chatId, "Вы успешно загрузили фото отчет, " +
+                    " пожалуйста не забудьте загрузить текстовый отчет отчет");
         }
     }
 
     private void sendMessage(Long chatId, String message) {
         SendMessage sendMessage = new SendMessage(chatId, message);
-        telegramBot.execute(sendMessage);
+        messageSender.send(sendMessage);
     }
 
     /* после загрузки фото в отчет, метод проверяет лежит ли в Optional текстовый отчет,
@@ -1,14 +1,15 @@
 package sky.pro.telegrambot2.handler;
 
-import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.Message;
 import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.request.SendMessage;
+import org.springframework.stereotype.Component;
+import sky.pro.telegrambot2.enam.UpdateType;
 import sky.pro.telegrambot2.keyboard.InlineKeyboard;
 import sky.pro.telegrambot2.model.*;
 import sky.pro.telegrambot2.repository.CatShelterUsersRepository;
 import sky.pro.telegrambot2.repository.DogShelterUsersRepository;
-import sky.pro.telegrambot2.repository.UserContextRepository;
+import sky.pro.telegrambot2.sender.MessageSender;
 import sky.pro.telegrambot2.service.*;
 
 import java.time.LocalDateTime;
@@ -17,34 +18,43 @@ import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+@Component
 public class TextHandler implements Handler {
-    private final TelegramBot telegramBot;
+    private static final Pattern PATTERN = Pattern.compile("\\d{11} [А-я]+");
+
+    private final MessageSender messageSender;
     private final DogShelterUserService dogShelterUserService;
     private final CatShelterUserService catShelterUserService;
     private final DogOwnerService dogOwnerService;
     private final CatOwnerService catOwnerService;
     private final DogOwnerReportService dogOwnerReportService;
     private final CatOwnerReportService catOwnerReportService;
-    private final UserContextRepository userContextRepository;
-
-    private final Pattern pattern = Pattern.compile("\\d{11} [А-я]+");
+    private final UserContextService userContextService;
+    private final InlineKeyboard inlineKeyboard;
 
-    public TextHandler(TelegramBot telegramBot,
+    public TextHandler(MessageSender messageSender,
                        DogShelterUserService dogShelterUserService,
                        CatShelterUserService catShelterUserService,
                        DogOwnerService dogOwnerService,
                        CatOwnerService catOwnerService,
                        DogOwnerReportService dogOwnerReportService,
                        CatOwnerReportService catOwnerReportService,
-                       UserContextRepository userContextRepository) {
-        this.telegramBot = telegramBot;
+                       UserContextService userContextService,
+                       InlineKeyboard inlineKeyboard) {
+        this.messageSender = messageSender;
         this.dogShelterUserService = dogShelterUserService;
         this.catShelterUserService = catShelterUserService;
         this.dogOwnerService = dogOwnerService;
         this.catOwnerService = catOwnerService;
         this.dogOwnerReportService = dogOwnerReportService;
         this.catOwnerReportService = catOwnerReportService;
-        this.userContextRepository = userContextRepository;
+        this.userContextService = userContextService;
+        this.inlineKeyboard = inlineKeyboard;
+    }
+
+    @Override
+    public UpdateType getType() {
+        return UpdateType.TEXT;
     }
 
     @Override
@@ -52,20 +62,14 @@ public class TextHandler implements Handler {
         Message message = update.message();
         Long chatId = update.message().from().id();
         String text = message.text();
-        Matcher matcher = pattern.matcher(text);
-        InlineKeyboard inlineKeyboard = new InlineKeyboard(telegramBot);
+        Matcher matcher = PATTERN.matcher(text);
 
         /*если пользователь отправил команду /start вызывается стартовое меню */
         if ("/start".equals(text)) {
-            boolean catShelter = userContextRepository.findByChatId(chatId)
-                    .map(UserContext::isCatShelter)
-                    .orElse(false);
-            boolean dogShelter = userContextRepository.findByChatId(chatId)
-                    .map(UserContext::isDogShelter)
-                    .orElse(false);
-            if (dogShelter) {
+            UserContext userContext = userContextService.getContext(chatId);
+            if (userContext.isDogShelter()) {
                 inlineKeyboard.showDogShelterMenu(chatId);
-            } else if (catShelter) {
+            } else if (userContext.isCatShelter()) {
                 inlineKeyboard.showCatShelterMenu(chatId);
             } else {
                 inlineKeyboard.chooseShelterMenu(chatId);
@@ -85,17 +89,12 @@ public class TextHandler implements Handler {
         foundString = foundString.replaceAll(" ", "");
         String phoneNumber = foundString.substring(0, 10);
         String name = foundString.substring(11);
-        boolean dogShelter = userContextRepository.findByChatId(chatId)
-                .map(UserContext::isDogShelter)
-                .orElse(false);
-        boolean catShelter = userContextRepository.findByChatId(chatId)
-                .map(UserContext::isCatShelter)
-                .orElse(false);
-        if (dogShelter) {
+        UserContext userContext = userContextService.getContext(chatId);
+        if (userContext.isDogShelter()) {
             dogShelterUserService.addUser(phoneNumber, name);
             sendMessage(chatId,"Ваша контактная информация сохранена, скоро с вами свяжется один" +
                     " из наших волонтеров");
-        } else if (catShelter) {
+        } else if (userContext.isCatShelter()) {
             catShelterUserService.addUser(phoneNumber, name);
             sendMessage(chatId,"Ваша контактная информация сохранена, скоро с вами свяжется один" +
                     " из наших волонтеров");
@@ -104,15 +103,15 @@ public class TextHandler implements Handler {
 
     private void sendMessage(Long chatId, String message) {
         SendMessage sendMessage = new SendMessage(chatId, message);
-        telegramBot.execute(sendMessage);
+        messageSender.send(sendMessage);
     }
 
     /* после загрузки текста в отчет, метод проверяет лежит ли в Optional фото отчет,
      * если лежит информирует овнера, что текст загружен, если нет информирует, что текст загружен
      * и просит не забыть загрузить фото отчет*/
-    private void sendInfoIfOnlyStringReportLoaded(Optional<byte[]> image,
+    private void sendInfoIfOnlyStringReportLoaded(Optional<String> photoKey,
                                                   Long chatId) {
-        if (image.isPresent()) {
+        if (photoKey.isPresent()) {
             sendMessage(chatId, "Вы успешно загрузили текстовый отчет");
         } else {
             sendMessage(chatId, "Вы успешно загрузили текстовый отчет," +
@@ -125,10 +124,10 @@ public class TextHandler implements Handler {
         Optional<DogOwner> optDogOwner = dogOwnerService.findDogOwnerByChatId(chatId);
         if (optDogOwner.isPresent()) {
             DogOwner dogOwner = optDogOwner.get();
-            Optional<DogOwnerReport> optDogOwnerReport =
+            Optional<LastReport> optDogOwnerReport =
                     dogOwnerReportService.findLastReportByOwnerId(dogOwner.getId());
             if (optDogOwnerReport.isPresent()) {
-                DogOwnerReport dogOwnerReport = optDogOwnerReport.get();
+                LastReport dogOwnerReport = optDogOwnerReport.get();
                 if (dateTimeNow.isBefore(dogOwnerReport.getDateOfLastReport().plusDays(1))) {
                     dogOwnerReportService.saveTextInExistingReport(dogOwnerReport,
                             textReport,
@@ -139,7 +138,7 @@ public class TextHandler implements Handler {
                             dogOwner,
                             LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES));
                 }
-                sendInfoIfOnlyStringReportLoaded(optDogOwnerReport.get().getPhotoReport(), chatId);
+                sendInfoIfOnlyStringReportLoaded(optDogOwnerReport.get().getPhotoKey(), chatId);
             } else {
                 dogOwnerReportService.saveTextInNewReport(textReport,
                         dogOwner,
@@ -155,10 +154,10 @@ public class TextHandler implements Handler {
         Optional<CatOwner> optCatOwner = catOwnerService.findCatOwnerByChatId(chatId);
         if (optCatOwner.isPresent()) {
             CatOwner catOwner = optCatOwner.get();
-            Optional<CatOwnerReport> optCatOwnerReport =
+            Optional<LastReport> optCatOwnerReport =
                     catOwnerReportService.findLastReportByOwnerId(catOwner.getId());
             if (optCatOwnerReport.isPresent()) {
-                CatOwnerReport catOwnerReport = optCatOwnerReport.get();
+                LastReport catOwnerReport = optCatOwnerReport.get();
                 if (dateTimeNow.isBefore(catOwnerReport.getDateOfLastReport().plusDays(1))) {
                     catOwnerReportService.saveTextInExistingReport(catOwnerReport,
                             textReport,
@@ -169,7 +168,7 @@ public class TextHandler implements Handler {
                             catOwner,
                             LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES));
                 }
-                sendInfoIfOnlyStringReportLoaded(optCatOwnerReport.get().getPhotoReport(), chatId);
+                sendInfoIfOnlyStringReportLoaded(optCatOwnerReport.get().getPhotoKey(), chatId);
             } else {
                 catOwnerReportService.saveTextInNewReport(textReport,
                         catOwner,
@@ -0,0 +1,19 @@
+package sky.pro.telegrambot2.keyboard;
+
+import com.pengrad.telegrambot.request.SendMessage;
+
+/* sendMessage с заранее сериализованной клавиатурой. Строковый параметр клиент Telegram отправляет
+ * как есть, поэтому reply_markup не сериализуется заново при каждой отправке*/
+class MenuMessage extends SendMessage {
+
+    MenuMessage(Long chatId, String text, String replyMarkup) {
+        super(chatId, text);
+        add("reply_markup", replyMarkup);
+    }
+
+    /* имя метода Bot API берется из имени класса запроса, поэтому его нужно задать явно*/
+    @Override
+    public String getMethod() {
+        return "sendMessage";
+    }
+}
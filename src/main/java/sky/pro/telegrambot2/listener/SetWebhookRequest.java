@@ -0,0 +1,19 @@
+package sky.pro.telegrambot2.listener;
+
+import com.pengrad.telegrambot.request.SetWebhook;
+
+/* setWebhook с secret_token: в используемой версии клиента у SetWebhook нет такого параметра,
+ * а без него Telegram не присылает заголовок, который проверяет TelegramWebhookController*/
+class SetWebhookRequest extends SetWebhook {
+
+    SetWebhookRequest(String url, String secretToken) {
+        url(url);
+        add("secret_token", secretToken);
+    }
+
+    /* имя метода Bot API берется из имени класса запроса, поэтому его нужно задать явно*/
+    @Override
+    public String getMethod() {
+        return "setWebhook";
+    }
+}
@@ -5,87 +5,109 @@ import com.pengrad.telegrambot.UpdatesListener;
 import com.pengrad.telegrambot.model.Update;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import sky.pro.telegrambot2.handler.CallBackQueryHandler;
-import sky.pro.telegrambot2.handler.Handler;
-import sky.pro.telegrambot2.handler.ImageHandler;
-import sky.pro.telegrambot2.handler.TextHandler;
-import sky.pro.telegrambot2.repository.UserContextRepository;
-import sky.pro.telegrambot2.service.*;
+import sky.pro.telegrambot2.cluster.ClusterCoordinator;
+import sky.pro.telegrambot2.handler.HandlerChain;
+import sky.pro.telegrambot2.service.DeadLetterService;
 
-import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.List;
+import java.util.Objects;
+import java.util.OptionalInt;
 
 
 @Service
 public class TelegramBotUpdatesListener implements UpdatesListener {
-    private final DogOwnerService dogOwnerService;
-    private final CatOwnerService catOwnerService;
-    private final DogOwnerReportService dogOwnerReportService;
-    private final CatOwnerReportService catOwnerReportService;
     private final TelegramBot telegramBot;
-    private final UserContextRepository userContextRepository;
-    private final DogShelterUserService dogShelterUserService;
-    private final CatShelterUserService catShelterUserService;
+    private final UpdateDispatcher updateDispatcher;
+    private final HandlerChain handlerChain;
+    private final DeadLetterService deadLetterService;
+    private final ClusterCoordinator clusterCoordinator;
+    private final UpdateDeduplicator updateDeduplicator;
     private final Logger logger = LoggerFactory.getLogger(TelegramBotUpdatesListener.class);
+    private volatile boolean polling;
 
-    public TelegramBotUpdatesListener(DogOwnerService dogOwnerService,
-                                      CatOwnerService catOwnerService,
-                                      DogOwnerReportService dogOwnerReportService,
-                                      CatOwnerReportService catOwnerReportService,
-                                      TelegramBot telegramBot,
-                                      UserContextRepository userContextRepository,
-                                      DogShelterUserService dogShelterUserService,
-                                      CatShelterUserService catShelterUserService) {
-        this.dogOwnerService = dogOwnerService;
-        this.catOwnerService = catOwnerService;
-        this.dogOwnerReportService = dogOwnerReportService;
-        this.catOwnerReportService = catOwnerReportService;
+    public TelegramBotUpdatesListener(TelegramBot telegramBot,
+                                      UpdateDispatcher updateDispatcher,
+                                      HandlerChain handlerChain,
+                                      DeadLetterService deadLetterService,
+                                      ClusterCoordinator clusterCoordinator,
+                                      UpdateDeduplicator updateDeduplicator) {
         this.telegramBot = telegramBot;
-        this.userContextRepository = userContextRepository;
-        this.dogShelterUserService = dogShelterUserService;
-        this.catShelterUserService = catShelterUserService;
+        this.updateDispatcher = updateDispatcher;
+        this.handlerChain = handlerChain;
+        this.deadLetterService = deadLetterService;
+        this.clusterCoordinator = clusterCoordinator;
+        this.updateDeduplicator = updateDeduplicator;
     }
 
-    @PostConstruct
-    public void init() {
-        telegramBot.setUpdatesListener(this);
+    /* getUpdates в кластере держит только владелец аренды polling, иначе узлы получали бы 409 от Telegram
+     * и делили бы апдейты одного чата между собой. В режиме WEBHOOK эту аренду никто не берет,
+     * апдейты приходят через TelegramWebhookController*/
+    @Scheduled(fixedDelayString = "${cluster.heartbeat-interval:5000}")
+    public synchronized void syncPolling() {
+        boolean leader = clusterCoordinator.isLeader(ClusterCoordinator.POLLING_LEASE);
+        if (leader && !polling) {
+            telegramBot.setUpdatesListener(this);
+            polling = true;
+        } else if (!leader && polling) {
+            telegramBot.removeGetUpdatesListener();
+            polling = false;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stopPolling() {
+        if (polling) {
+            telegramBot.removeGetUpdatesListener();
+            polling = false;
+        }
     }
 
+    /* апдейт, упавший в обработчике, уходит в dead letter и считается обработанным. Если не удалось
+     * даже сохранить его в dead letter, подтверждаются только апдейты до него, а он и следующие
+     * будут получены от Telegram повторно. Уже обработанные из них отсеет UpdateDeduplicator*/
     @Override
     public int process(List<Update> updates) {
         try {
-            updates.forEach(update -> {
-                logger.info("Processing update: {}", update);
-                if (update.callbackQuery() != null) {
-                    Handler callBackHandler = new CallBackQueryHandler(telegramBot,
-                            userContextRepository);
-                    callBackHandler.handle(update);
-                    return;
-                }
-                if (update.message().text() != null) {
-                    Handler textHandler = new TextHandler(telegramBot,
-                            dogShelterUserService,
-                            catShelterUserService,
-                            dogOwnerService,
-                            catOwnerService,
-                            dogOwnerReportService,
-                            catOwnerReportService,
-                            userContextRepository);
-                    textHandler.handle(update);
-                }
-                if (update.message().photo() != null) {
-                    Handler imageHandler = new ImageHandler(telegramBot,
-                            dogOwnerService,
-                            catOwnerService,
-                            dogOwnerReportService,
-                            catOwnerReportService);
-                    imageHandler.handle(update);
-                }
-            });
+            OptionalInt firstFailed = updateDispatcher.dispatch(updates, this::handleUpdate);
+            if (firstFailed.isPresent()) {
+                int lastProcessed = firstFailed.getAsInt() - 1;
+                advanceLowWaterMark(lastProcessed);
+                return lastProcessed >= 0 ? lastProcessed : UpdatesListener.CONFIRMED_UPDATES_NONE;
+            }
+            updates.stream()
+                    .map(Update::updateId)
+                    .filter(Objects::nonNull)
+                    .max(Integer::compare)
+                    .ifPresent(this::advanceLowWaterMark);
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
         }
         return UpdatesListener.CONFIRMED_UPDATES_ALL;
     }
+
+    /* при long polling пачка содержит все апдейты до последнего, поэтому подтвержденный id сдвигает нижнюю
+     * границу. Через webhook узел получает только апдейты своих партиций, и граница не сдвигается*/
+    private void advanceLowWaterMark(int updateId) {
+        if (polling && updateId >= 0) {
+            updateDeduplicator.advanceLowWaterMark(updateId);
+        }
+    }
+
+    private void handleUpdate(Update update) {
+        if (updateDeduplicator.isProcessed(update.updateId())) {
+            logger.info("Skipping already processed update {}", update.updateId());
+            return;
+        }
+        logger.info("Processing update: {}", update);
+        try {
+            handlerChain.handle(update);
+        } catch (Exception e) {
+            logger.error("Update {} moved to dead letter: {}", update.updateId(), e.getMessage(), e);
+            deadLetterService.deadLetter(update, e);
+        }
+        updateDeduplicator.markProcessed(update.updateId());
+    }
 }
@@ -0,0 +1,99 @@
+package sky.pro.telegrambot2.listener;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import sky.pro.telegrambot2.model.UpdateWatermark;
+import sky.pro.telegrambot2.repository.UpdateWatermarkRepository;
+
+import java.util.Arrays;
+
+/* защита от повторной обработки апдейта после рестарта или повторной доставки. Апдейты с id не больше
+ * нижней границы считаются обработанными, она хранится в базе и переживает рестарт. Апдейты выше границы
+ * отмечаются в кольцевом битовом окне из window последних id: апдейт, обработанный в пачке, которую
+ * Telegram пришлет повторно из-за упавшего соседа, второй раз в обработчики не попадет*/
+@Component
+public class UpdateDeduplicator {
+    static final String POLLING_WATERMARK = "polling";
+
+    private final UpdateWatermarkRepository updateWatermarkRepository;
+    private final Counter duplicates;
+    private final long[] bits;
+    private final long mask;
+    private long lowWaterMark;
+    private long highest;
+
+    public UpdateDeduplicator(UpdateWatermarkRepository updateWatermarkRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${telegram.bot.dedup.window:65536}") int window) {
+        if (Integer.bitCount(window) != 1 || window < Long.SIZE) {
+            throw new IllegalArgumentException("telegram.bot.dedup.window must be a power of two >= 64");
+        }
+        this.updateWatermarkRepository = updateWatermarkRepository;
+        this.duplicates = meterRegistry.counter("bot.updates.duplicates");
+        this.bits = new long[window / Long.SIZE];
+        this.mask = window - 1;
+        this.lowWaterMark = updateWatermarkRepository.findById(POLLING_WATERMARK)
+                .map(UpdateWatermark::getUpdateId)
+                .orElse(-1L);
+        this.highest = lowWaterMark;
+    }
+
+    /* апдейты без id не дедуплицируются*/
+    public synchronized boolean isProcessed(Integer updateId) {
+        if (updateId == null) {
+            return false;
+        }
+        boolean processed = updateId <= lowWaterMark
+                || updateId <= highest && updateId > highest - bits.length * Long.SIZE && isSet(updateId);
+        if (processed) {
+            duplicates.increment();
+        }
+        return processed;
+    }
+
+    public synchronized void markProcessed(Integer updateId) {
+        if (updateId == null || updateId <= lowWaterMark || updateId <= highest - bits.length * Long.SIZE) {
+            return;
+        }
+        if (updateId > highest) {
+            slide(updateId);
+        }
+        int index = (int) (updateId & mask);
+        bits[index / Long.SIZE] |= 1L << index;
+    }
+
+    /* вызывается, когда Telegram больше не пришлет апдейты до updateId включительно. Граница пишется
+     * в базу одним запросом на пачку и только если она сдвинулась*/
+    public void advanceLowWaterMark(long updateId) {
+        synchronized (this) {
+            if (updateId <= lowWaterMark) {
+                return;
+            }
+            lowWaterMark = updateId;
+            if (updateId > highest) {
+                slide(updateId);
+            }
+        }
+        updateWatermarkRepository.advance(POLLING_WATERMARK, updateId);
+    }
+
+    private boolean isSet(long updateId) {
+        int index = (int) (updateId & mask);
+        return (bits[index / Long.SIZE] & 1L << index) != 0;
+    }
+
+    /* окно сдвигается вперед, освободившиеся позиции кольца очищаются под новые id*/
+    private void slide(long updateId) {
+        if (updateId - highest >= bits.length * (long) Long.SIZE) {
+            Arrays.fill(bits, 0L);
+        } else {
+            for (long id = highest + 1; id <= updateId; id++) {
+                int index = (int) (id & mask);
+                bits[index / Long.SIZE] &= ~(1L << index);
+            }
+        }
+        highest = updateId;
+    }
+}
@@ -0,0 +1,144 @@
+package sky.pro.telegrambot2.listener;
+
+import com.pengrad.telegrambot.model.Message;
+import com.pengrad.telegrambot.model.Update;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import sky.pro.telegrambot2.enam.ExecutionMode;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+@Component
+public class UpdateDispatcher {
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final Logger logger = LoggerFactory.getLogger(UpdateDispatcher.class);
+
+    /* в режиме PLATFORM апдейты обрабатываются на фиксированном пуле из workers потоков,
+     * в режиме VIRTUAL каждый чат батча получает свой виртуальный поток. Число одновременно
+     * обрабатываемых чатов ограничено maxConcurrency: пул соединений Hikari остается прежнего размера,
+     * а очередь виртуальных потоков за JDBC соединением не растет настолько, чтобы упираться в connectionTimeout.
+     * В режиме PLATFORM параллельность и так ограничена размером пула, семафор не нужен*/
+    public UpdateDispatcher(@Value("${telegram.bot.dispatcher.mode:PLATFORM}") ExecutionMode mode,
+                            @Value("${telegram.bot.dispatcher.workers:0}") int workers,
+                            @Value("${telegram.bot.dispatcher.max-concurrency:256}") int maxConcurrency) {
+        int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        if (mode == ExecutionMode.VIRTUAL) {
+            this.executor = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("update-worker-", 1).factory());
+            this.inFlight = new Semaphore(maxConcurrency);
+        } else {
+            this.executor = Executors.newFixedThreadPool(poolSize, workerThreadFactory());
+            this.inFlight = null;
+        }
+        logger.info("Update dispatcher started in {} mode", mode);
+    }
+
+    /* метод раскладывает апдейты батча по chatId: апдейты одного чата обрабатываются одной задачей строго
+     * по порядку, разные чаты обрабатываются параллельно на пуле воркеров. Метод возвращает управление только
+     * после того, как обработан весь батч, чтобы offset подтверждался уже обработанными апдейтами.
+     * Если обработчик бросил исключение, остальные апдейты этого чата не обрабатываются, чтобы не нарушить
+     * их порядок, а метод возвращает наименьший id необработанного апдейта*/
+    public OptionalInt dispatch(List<Update> updates, Consumer<Update> handler) {
+        Map<Long, List<Update>> updatesByChat = new LinkedHashMap<>();
+        for (Update update : updates) {
+            updatesByChat.computeIfAbsent(chatIdOf(update), chatId -> new ArrayList<>()).add(update);
+        }
+        List<List<Update>> chats = new ArrayList<>(updatesByChat.values());
+        List<Future<OptionalInt>> futures = new ArrayList<>(chats.size());
+        chats.forEach(chatUpdates -> futures.add(executor.submit(() -> handleChatUpdates(chatUpdates, handler))));
+        OptionalInt firstFailed = OptionalInt.empty();
+        for (int i = 0; i < futures.size(); i++) {
+            OptionalInt failed;
+            try {
+                failed = futures.get(i).get();
+            } catch (ExecutionException e) {
+                logger.error(e.getCause().getMessage(), e.getCause());
+                failed = OptionalInt.of(chats.get(i).get(0).updateId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return OptionalInt.of(updates.stream().mapToInt(Update::updateId).min().orElse(0));
+            }
+            if (failed.isPresent() && (firstFailed.isEmpty() || failed.getAsInt() < firstFailed.getAsInt())) {
+                firstFailed = failed;
+            }
+        }
+        return firstFailed;
+    }
+
+    private OptionalInt handleChatUpdates(List<Update> chatUpdates, Consumer<Update> handler) {
+        if (inFlight == null) {
+            return handleInOrder(chatUpdates, handler);
+        }
+        inFlight.acquireUninterruptibly();
+        try {
+            return handleInOrder(chatUpdates, handler);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private OptionalInt handleInOrder(List<Update> chatUpdates, Consumer<Update> handler) {
+        for (Update update : chatUpdates) {
+            try {
+                handler.accept(update);
+            } catch (Exception e) {
+                logger.error("Update {} was not processed: {}", update.updateId(), e.getMessage(), e);
+                return OptionalInt.of(update.updateId());
+            }
+        }
+        return OptionalInt.empty();
+    }
+
+    /* ключ шардирования апдейта, для апдейтов без чата используется их собственный id,
+     * чтобы они не блокировали друг друга*/
+    public static Long chatIdOf(Update update) {
+        if (update.message() != null) {
+            return chatIdOf(update.message());
+        }
+        if (update.editedMessage() != null) {
+            return chatIdOf(update.editedMessage());
+        }
+        if (update.callbackQuery() != null) {
+            return update.callbackQuery().from().id();
+        }
+        return Long.MIN_VALUE + update.updateId();
+    }
+
+    private static Long chatIdOf(Message message) {
+        return message.chat() != null ? message.chat().id() : message.from().id();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "update-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
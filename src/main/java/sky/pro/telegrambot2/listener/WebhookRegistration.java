@@ -0,0 +1,57 @@
+package sky.pro.telegrambot2.listener;
+
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.DeleteWebhook;
+import com.pengrad.telegrambot.response.BaseResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/* регистрация webhook при старте. В режиме WEBHOOK Telegram сообщается адрес и secret_token, без этого
+ * апдейты не приходят. В режиме POLLING webhook снимается, иначе getUpdates получает 409 от Telegram.
+ * Вызовы идемпотентны, поэтому каждый узел кластера выполняет их при своем старте*/
+@Component
+public class WebhookRegistration {
+    static final String WEBHOOK_MODE = "WEBHOOK";
+
+    private final TelegramBot telegramBot;
+    private final String ingestionMode;
+    private final String webhookUrl;
+    private final String secretToken;
+    private final Logger logger = LoggerFactory.getLogger(WebhookRegistration.class);
+
+    public WebhookRegistration(TelegramBot telegramBot,
+                               @Value("${telegram.bot.ingestion-mode:POLLING}") String ingestionMode,
+                               @Value("${telegram.bot.webhook.url:}") String webhookUrl,
+                               @Value("${telegram.bot.webhook.secret-token:}") String secretToken) {
+        this.telegramBot = telegramBot;
+        this.ingestionMode = ingestionMode;
+        this.webhookUrl = webhookUrl;
+        this.secretToken = secretToken;
+    }
+
+    @PostConstruct
+    public void register() {
+        if (WEBHOOK_MODE.equals(ingestionMode)) {
+            if (webhookUrl.isBlank() || secretToken.isBlank()) {
+                throw new IllegalStateException(
+                        "telegram.bot.webhook.url and telegram.bot.webhook.secret-token must be set in WEBHOOK mode");
+            }
+            BaseResponse response = telegramBot.execute(new SetWebhookRequest(webhookUrl, secretToken));
+            if (response == null || !response.isOk()) {
+                throw new IllegalStateException("setWebhook failed: "
+                        + (response == null ? "no response" : response.description()));
+            }
+            logger.info("Webhook registered at {}", webhookUrl);
+        } else {
+            /* ожидающие апдейты не сбрасываются, их заберет long polling*/
+            BaseResponse response = telegramBot.execute(new DeleteWebhook());
+            if (response == null || !response.isOk()) {
+                logger.warn("deleteWebhook failed: {}", response == null ? "no response" : response.description());
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package sky.pro.telegrambot2.listener;
+
+import com.pengrad.telegrambot.UpdatesListener;
+import com.pengrad.telegrambot.model.Update;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/* очередь апдейтов, пришедших через webhook. Контроллер только кладет апдейт в очередь и сразу отвечает
+ * Telegram, а отдельный поток забирает апдейты пачками и отдает их в тот же конвейер, что и long polling.
+ * Очередь ограничена: когда она заполнена, контроллер отвечает ошибкой и Telegram повторит доставку позже.
+ * Очередь хранится только в памяти, а Telegram не повторяет подтвержденный апдейт, поэтому при падении
+ * узла необработанные апдейты из очереди (не больше queue-capacity) теряются. Это принятый компромисс
+ * режима WEBHOOK ради быстрого ответа, long polling подтверждает апдейты только после обработки*/
+@Component
+@ConditionalOnProperty(name = "telegram.bot.ingestion-mode", havingValue = "WEBHOOK")
+public class WebhookUpdateQueue {
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final TelegramBotUpdatesListener telegramBotUpdatesListener;
+    private final BlockingQueue<Update> queue;
+    private final int batchSize;
+    private final Logger logger = LoggerFactory.getLogger(WebhookUpdateQueue.class);
+    private Thread drainThread;
+
+    public WebhookUpdateQueue(TelegramBotUpdatesListener telegramBotUpdatesListener,
+                              @Value("${telegram.bot.webhook.queue-capacity:10000}") int queueCapacity,
+                              @Value("${telegram.bot.webhook.batch-size:100}") int batchSize) {
+        this.telegramBotUpdatesListener = telegramBotUpdatesListener;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        drainThread = new Thread(this::drain, "webhook-updates");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        drainThread.interrupt();
+    }
+
+    /* false, если очередь заполнена*/
+    public boolean offer(Update update) {
+        return queue.offer(update);
+    }
+
+    /* Telegram уже получил ответ на эти апдейты и повторно их не пришлет, поэтому неподтвержденный
+     * остаток пачки обрабатывается еще раз, пока не будет подтвержден*/
+    private void drain() {
+        List<Update> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (batch.isEmpty()) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, batchSize - 1);
+                    batch.sort(Comparator.comparing(Update::updateId));
+                }
+                int confirmed = telegramBotUpdatesListener.process(List.copyOf(batch));
+                if (confirmed == UpdatesListener.CONFIRMED_UPDATES_ALL) {
+                    batch.clear();
+                } else {
+                    batch.removeIf(update -> update.updateId() <= confirmed);
+                    logger.warn("{} webhook updates were not processed, retrying", batch.size());
+                    TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
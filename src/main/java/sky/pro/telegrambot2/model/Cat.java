@@ -10,7 +10,8 @@ import java.util.Objects;
 @Table(name = "cats")
 public class Cat {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cats_id_seq")
+    @SequenceGenerator(name = "cats_id_seq", sequenceName = "cats_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "birth_date")
@@ -11,7 +11,8 @@ import java.util.Collection;
 @Table(name = "cat_owners")
 public class CatOwner {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cat_owners_id_seq")
+    @SequenceGenerator(name = "cat_owners_id_seq", sequenceName = "cat_owners_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "chat_id")
@@ -36,6 +37,15 @@ public class CatOwner {
     @Column(name = "period_extend")
     private int periodExtend;
 
+    /* сроки напоминания овнеру и сообщения волонтеру по последнему отчету, null если ничего не запланировано*/
+    @Column(name = "remind_at")
+    @JsonIgnore
+    private LocalDateTime remindAt;
+
+    @Column(name = "escalate_at")
+    @JsonIgnore
+    private LocalDateTime escalateAt;
+
     @OneToOne(mappedBy = "owner")
     @JsonIgnore
     private Cat cats;
@@ -117,4 +127,20 @@ public class CatOwner {
         this.reports = reports;
     }
 
+    public LocalDateTime getRemindAt() {
+        return remindAt;
+    }
+
+    public void setRemindAt(LocalDateTime remindAt) {
+        this.remindAt = remindAt;
+    }
+
+    public LocalDateTime getEscalateAt() {
+        return escalateAt;
+    }
+
+    public void setEscalateAt(LocalDateTime escalateAt) {
+        this.escalateAt = escalateAt;
+    }
+
 }
@@ -8,11 +8,19 @@ import java.util.Optional;
 @Table(name = "cat_owner_reports")
 public class CatOwnerReport {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cat_owner_reports_id_seq")
+    @SequenceGenerator(name = "cat_owner_reports_id_seq", sequenceName = "cat_owner_reports_id_seq", allocationSize = 50)
     private Integer id;
 
-    @Column(name = "photo_report")
-    private byte[] photoReport;
+    /* ключ фото в BlobStore (sha-256 содержимого), само фото в таблице не хранится*/
+    @Column(name = "photo_key")
+    private String photoKey;
+
+    @Column(name = "photo_size")
+    private Long photoSize;
+
+    @Column(name = "photo_mime")
+    private String photoMime;
 
     @Column(name = "string_report")
     private String stringReport;
@@ -32,12 +40,28 @@ public class CatOwnerReport {
         this.id = id;
     }
 
-    public Optional<byte[]> getPhotoReport() {
-        return Optional.ofNullable(photoReport);
+    public Optional<String> getPhotoKey() {
+        return Optional.ofNullable(photoKey);
+    }
+
+    public void setPhotoKey(String photoKey) {
+        this.photoKey = photoKey;
+    }
+
+    public Long getPhotoSize() {
+        return photoSize;
+    }
+
+    public void setPhotoSize(Long photoSize) {
+        this.photoSize = photoSize;
+    }
+
+    public String getPhotoMime() {
+        return photoMime;
     }
 
-    public void setPhotoReport(byte[] photoReport) {
-        this.photoReport = photoReport;
+    public void setPhotoMime(String photoMime) {
+        this.photoMime = photoMime;
     }
 
     public Optional<String> getStringReport() {
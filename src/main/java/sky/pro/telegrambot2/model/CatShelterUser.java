@@ -8,7 +8,8 @@ import java.util.Objects;
 @Table(name = "cat_shelter_users")
 public class CatShelterUser {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cat_shelter_users_id_seq")
+    @SequenceGenerator(name = "cat_shelter_users_id_seq", sequenceName = "cat_shelter_users_id_seq", allocationSize = 50)
     private Integer id;
     private String name;
     private String phoneNumber;
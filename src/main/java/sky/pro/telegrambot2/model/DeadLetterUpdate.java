@@ -0,0 +1,67 @@
+package sky.pro.telegrambot2.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/* апдейт, обработка которого завершилась ошибкой. Хранится целиком в json, чтобы его можно было
+ * разобрать и при необходимости обработать повторно*/
+@Entity
+@Table(name = "dead_letter_updates")
+public class DeadLetterUpdate {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dead_letter_updates_id_seq")
+    @SequenceGenerator(name = "dead_letter_updates_id_seq", sequenceName = "dead_letter_updates_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "update_id")
+    private Integer updateId;
+
+    @Column(name = "payload")
+    private String payload;
+
+    @Column(name = "error")
+    private String error;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Integer getUpdateId() {
+        return updateId;
+    }
+
+    public void setUpdateId(Integer updateId) {
+        this.updateId = updateId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -10,7 +10,8 @@ import java.util.Objects;
 @Table(name = "dogs")
 public class Dog {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dogs_id_seq")
+    @SequenceGenerator(name = "dogs_id_seq", sequenceName = "dogs_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "birth_date")
@@ -13,7 +13,8 @@ import java.util.Objects;
 @Table(name = "dog_owners")
 public class DogOwner {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dog_owners_id_seq")
+    @SequenceGenerator(name = "dog_owners_id_seq", sequenceName = "dog_owners_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "chat_id")
@@ -38,6 +39,15 @@ public class DogOwner {
     @Column(name = "period_extend")
     private int periodExtend;
 
+    /* сроки напоминания овнеру и сообщения волонтеру по последнему отчету, null если ничего не запланировано*/
+    @Column(name = "remind_at")
+    @JsonIgnore
+    private LocalDateTime remindAt;
+
+    @Column(name = "escalate_at")
+    @JsonIgnore
+    private LocalDateTime escalateAt;
+
     @OneToOne(mappedBy = "owner")
     @JsonIgnore
     private Dog dogs;
@@ -119,6 +129,22 @@ public class DogOwner {
         this.reports = reports;
     }
 
+    public LocalDateTime getRemindAt() {
+        return remindAt;
+    }
+
+    public void setRemindAt(LocalDateTime remindAt) {
+        this.remindAt = remindAt;
+    }
+
+    public LocalDateTime getEscalateAt() {
+        return escalateAt;
+    }
+
+    public void setEscalateAt(LocalDateTime escalateAt) {
+        this.escalateAt = escalateAt;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
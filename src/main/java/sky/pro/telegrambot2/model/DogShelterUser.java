@@ -7,7 +7,8 @@ import java.util.Objects;
 @Table(name = "dog_shelter_users")
 public class DogShelterUser {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dog_shelter_users_id_seq")
+    @SequenceGenerator(name = "dog_shelter_users_id_seq", sequenceName = "dog_shelter_users_id_seq", allocationSize = 50)
     private Integer id;
     private String name;
     private String phoneNumber;
@@ -0,0 +1,16 @@
+package sky.pro.telegrambot2.model;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/* последний отчет овнера - строка запроса findLastReportByOwnerId. Сущность отчета не создается,
+ * поэтому вместе с ним не загружаются овнер и его животное*/
+public interface LastReport {
+    Integer getId();
+
+    LocalDateTime getDateOfLastReport();
+
+    Optional<String> getStringReport();
+
+    Optional<String> getPhotoKey();
+}
@@ -0,0 +1,94 @@
+package sky.pro.telegrambot2.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+
+/* строка выгрузки отчетов. Собирается прямо в запросе, поэтому выгружаемые отчеты не попадают
+ * в persistence context и память не растет с количеством строк*/
+public class ReportExportRow {
+    private Integer id;
+    private Integer ownerId;
+    private String ownerName;
+    private LocalDateTime date;
+    private String text;
+    private Long photoSize;
+    private String photoUrl;
+    @JsonIgnore
+    private String photoKey;
+
+    public ReportExportRow(Integer id, Integer ownerId, String ownerName, LocalDateTime date, String text,
+                           Long photoSize, String photoKey) {
+        this.id = id;
+        this.ownerId = ownerId;
+        this.ownerName = ownerName;
+        this.date = date;
+        this.text = text;
+        this.photoSize = photoSize;
+        this.photoKey = photoKey;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getOwnerId() {
+        return ownerId;
+    }
+
+    public void setOwnerId(Integer ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    public String getOwnerName() {
+        return ownerName;
+    }
+
+    public void setOwnerName(String ownerName) {
+        this.ownerName = ownerName;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public Long getPhotoSize() {
+        return photoSize;
+    }
+
+    public void setPhotoSize(Long photoSize) {
+        this.photoSize = photoSize;
+    }
+
+    public String getPhotoUrl() {
+        return photoUrl;
+    }
+
+    public void setPhotoUrl(String photoUrl) {
+        this.photoUrl = photoUrl;
+    }
+
+    public String getPhotoKey() {
+        return photoKey;
+    }
+
+    public void setPhotoKey(String photoKey) {
+        this.photoKey = photoKey;
+    }
+}
@@ -0,0 +1,50 @@
+package sky.pro.telegrambot2.model;
+
+import java.time.LocalDateTime;
+
+/* метаданные фото отчета, по которым контроллер отдает содержимое из BlobStore*/
+public class ReportPhoto {
+    private String key;
+    private Long size;
+    private String mimeType;
+    private LocalDateTime lastModified;
+
+    public ReportPhoto(String key, Long size, String mimeType, LocalDateTime lastModified) {
+        this.key = key;
+        this.size = size;
+        this.mimeType = mimeType;
+        this.lastModified = lastModified;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public void setMimeType(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    public LocalDateTime getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(LocalDateTime lastModified) {
+        this.lastModified = lastModified;
+    }
+}
@@ -0,0 +1,100 @@
+package sky.pro.telegrambot2.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import sky.pro.telegrambot2.exception.WrongInputDataException;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/* краткое представление отчета для списка отчетов овнера. Вместо самого фото отдается его размер
+ * и ссылка, по которой фото можно скачать отдельным запросом*/
+public class ReportSummary {
+    /* поля ответа, по которым можно сортировать список -> свойства сущности отчета*/
+    private static final Map<String, String> SORT_PROPERTIES = Map.of(
+            "id", "id",
+            "date", "dateOfLastReport",
+            "text", "stringReport",
+            "photoSize", "photoSize");
+
+    private Integer id;
+    private LocalDateTime date;
+    private String text;
+    private Long photoSize;
+    private String photoUrl;
+    @JsonIgnore
+    private String photoKey;
+
+    public ReportSummary(Integer id, LocalDateTime date, String text, Long photoSize, String photoKey) {
+        this.id = id;
+        this.date = date;
+        this.text = text;
+        this.photoSize = photoSize;
+        this.photoKey = photoKey;
+    }
+
+    /* сортировка клиента задается полями ответа, в запрос она уходит свойствами сущности.
+     * Неизвестное поле - WrongInputDataException*/
+    public static Pageable toEntityPageable(Pageable pageable) {
+        Sort sort = Sort.by(pageable.getSort().stream()
+                .map(order -> {
+                    String property = SORT_PROPERTIES.get(order.getProperty());
+                    if (property == null) {
+                        throw new WrongInputDataException();
+                    }
+                    return order.withProperty(property);
+                })
+                .toArray(Sort.Order[]::new));
+        return pageable.isPaged() ? PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort) : pageable;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public Long getPhotoSize() {
+        return photoSize;
+    }
+
+    public void setPhotoSize(Long photoSize) {
+        this.photoSize = photoSize;
+    }
+
+    public String getPhotoUrl() {
+        return photoUrl;
+    }
+
+    public void setPhotoUrl(String photoUrl) {
+        this.photoUrl = photoUrl;
+    }
+
+    public String getPhotoKey() {
+        return photoKey;
+    }
+
+    public void setPhotoKey(String photoKey) {
+        this.photoKey = photoKey;
+    }
+}
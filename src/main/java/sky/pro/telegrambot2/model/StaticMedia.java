@@ -0,0 +1,46 @@
+package sky.pro.telegrambot2.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/* file_id, который Telegram вернул после первой загрузки картинки из ресурсов. Вместе с ним хранится
+ * sha-256 содержимого: если картинку в ресурсах заменили, старый file_id не используется*/
+@Entity
+@Table(name = "static_media")
+public class StaticMedia {
+    @Id
+    @Column(name = "resource_name")
+    private String resourceName;
+
+    @Column(name = "sha256")
+    private String sha256;
+
+    @Column(name = "file_id")
+    private String fileId;
+
+    public String getResourceName() {
+        return resourceName;
+    }
+
+    public void setResourceName(String resourceName) {
+        this.resourceName = resourceName;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(String fileId) {
+        this.fileId = fileId;
+    }
+}
@@ -0,0 +1,10 @@
+package sky.pro.telegrambot2.model;
+
+/* овнер, которому сменили статус испытательного срока, - строка из RETURNING запроса смены статуса*/
+public interface StatusTransition {
+    Long getChatId();
+
+    String getName();
+
+    Integer getPeriodExtend();
+}
@@ -0,0 +1,34 @@
+package sky.pro.telegrambot2.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/* нижняя граница обработанных апдейтов: все апдейты с update_id не больше этого значения уже обработаны*/
+@Entity
+@Table(name = "update_watermarks")
+public class UpdateWatermark {
+    @Id
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "update_id")
+    private Long updateId;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getUpdateId() {
+        return updateId;
+    }
+
+    public void setUpdateId(Long updateId) {
+        this.updateId = updateId;
+    }
+}
@@ -0,0 +1,30 @@
+package sky.pro.telegrambot2.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import sky.pro.telegrambot2.model.ClusterLease;
+
+@Repository
+public interface ClusterLeaseRepository extends JpaRepository<ClusterLease, String> {
+
+    /*захват или продление аренды одним запросом: строка создается, если ее нет, и переписывается, если аренда
+     уже наша или истекла. Возвращает 1, если аренда принадлежит узлу, и 0, если ее держит другой живой узел*/
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO cluster_leases (name, owner, expires_at) " +
+            "VALUES (:name, :nodeId, now() + make_interval(secs => :ttlSeconds)) " +
+            "ON CONFLICT (name) DO UPDATE SET owner = excluded.owner, expires_at = excluded.expires_at " +
+            "WHERE cluster_leases.owner = excluded.owner OR cluster_leases.expires_at < now()",
+            nativeQuery = true)
+    int tryAcquire(@Param("name") String name, @Param("nodeId") String nodeId, @Param("ttlSeconds") long ttlSeconds);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE cluster_leases SET expires_at = now() WHERE name = :name AND owner = :nodeId",
+            nativeQuery = true)
+    int release(@Param("name") String name, @Param("nodeId") String nodeId);
+}
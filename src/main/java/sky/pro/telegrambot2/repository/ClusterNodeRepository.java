@@ -0,0 +1,33 @@
+package sky.pro.telegrambot2.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import sky.pro.telegrambot2.model.ClusterNode;
+
+import java.util.List;
+
+@Repository
+public interface ClusterNodeRepository extends JpaRepository<ClusterNode, String> {
+
+    /*время heartbeat берется из часов базы, чтобы расхождение часов узлов не влияло на состав кластера*/
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO cluster_nodes (node_id, url, heartbeat_at) VALUES (:nodeId, :url, now()) " +
+            "ON CONFLICT (node_id) DO UPDATE SET url = excluded.url, heartbeat_at = excluded.heartbeat_at",
+            nativeQuery = true)
+    void heartbeat(@Param("nodeId") String nodeId, @Param("url") String url);
+
+    @Query(value = "SELECT * FROM cluster_nodes WHERE heartbeat_at > now() - make_interval(secs => :ttlSeconds) " +
+            "ORDER BY node_id", nativeQuery = true)
+    List<ClusterNode> findLiveNodes(@Param("ttlSeconds") long ttlSeconds);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM cluster_nodes WHERE heartbeat_at < now() - make_interval(secs => :ttlSeconds)",
+            nativeQuery = true)
+    int deleteDeadNodes(@Param("ttlSeconds") long ttlSeconds);
+}
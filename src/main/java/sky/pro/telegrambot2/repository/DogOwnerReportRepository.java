@@ -1,18 +1,69 @@
 package sky.pro.telegrambot2.repository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import sky.pro.telegrambot2.model.DogOwnerReport;
+import sky.pro.telegrambot2.model.LastReport;
+import sky.pro.telegrambot2.model.ReportExportRow;
+import sky.pro.telegrambot2.model.ReportPhoto;
+import sky.pro.telegrambot2.model.ReportSummary;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface DogOwnerReportRepository extends JpaRepository<DogOwnerReport,Integer> {
 
-    /*запрос который находит последний отчет в таблице по id овнера*/
-    @Query(value = "SELECT * FROM dog_owner_reports ORDER BY dog_owner_id DESC, id DESC LIMIT 1", nativeQuery = true)
-    DogOwnerReport findLastReportByOwnerId(Integer ownerId);
+    /*запрос который находит последний отчет овнера. Идет по индексу (dog_owner_id, last_report DESC, id DESC)
+     * и читает одну строку, сколько бы отчетов ни было в таблице. Читаются только колонки LastReport*/
+    @Query(value = "SELECT id AS \"id\", last_report AS \"dateOfLastReport\", string_report AS \"stringReport\"," +
+            " photo_key AS \"photoKey\" FROM dog_owner_reports WHERE dog_owner_id = :ownerId" +
+            " ORDER BY last_report DESC, id DESC LIMIT 1", nativeQuery = true)
+    LastReport findLastReportByOwnerId(@Param("ownerId") Integer ownerId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE DogOwnerReport r SET r.stringReport = :text, r.dateOfLastReport = :date WHERE r.id = :id")
+    int updateText(@Param("id") Integer id, @Param("text") String text, @Param("date") LocalDateTime date);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE DogOwnerReport r SET r.photoKey = :key, r.photoSize = :size, r.photoMime = :mime," +
+            " r.dateOfLastReport = :date WHERE r.id = :id")
+    int updatePhoto(@Param("id") Integer id,
+                    @Param("key") String key,
+                    @Param("size") Long size,
+                    @Param("mime") String mime,
+                    @Param("date") LocalDateTime date);
     List<DogOwnerReport> findByDogOwnerId(Integer ownerId);
 
+    /* список отчетов без загрузки сущностей: читаются только колонки, нужные для ReportSummary*/
+    @Query(value = "SELECT new sky.pro.telegrambot2.model.ReportSummary(r.id, r.dateOfLastReport, r.stringReport," +
+            " r.photoSize, r.photoKey) FROM DogOwnerReport r WHERE r.dogOwner.id = :ownerId",
+            countQuery = "SELECT COUNT(r) FROM DogOwnerReport r WHERE r.dogOwner.id = :ownerId")
+    Page<ReportSummary> findSummariesByOwnerId(@Param("ownerId") Integer ownerId, Pageable pageable);
+
+    @Query("SELECT new sky.pro.telegrambot2.model.ReportPhoto(r.photoKey, r.photoSize, r.photoMime, r.dateOfLastReport)" +
+            " FROM DogOwnerReport r WHERE r.id = :id AND r.photoKey IS NOT NULL")
+    Optional<ReportPhoto> findPhotoByReportId(@Param("id") Integer id);
+
+    /* выгрузка за период читается курсором: fetch size ограничивает число строк, которые драйвер
+     * держит в памяти, а строки выгрузки не являются сущностями и не копятся в persistence context.
+     * Вызывать только внутри транзакции, иначе PostgreSQL отдаст весь результат разом*/
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("SELECT new sky.pro.telegrambot2.model.ReportExportRow(r.id, o.id, o.name, r.dateOfLastReport," +
+            " r.stringReport, r.photoSize, r.photoKey) FROM DogOwnerReport r LEFT JOIN r.dogOwner o" +
+            " WHERE r.dateOfLastReport >= :from AND r.dateOfLastReport < :to ORDER BY r.dateOfLastReport, r.id")
+    Stream<ReportExportRow> streamReportsBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
 }
\ No newline at end of file
@@ -1,12 +1,60 @@
 package sky.pro.telegrambot2.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import sky.pro.telegrambot2.enam.ProbationaryStatus;
 import sky.pro.telegrambot2.model.DogOwner;
+import sky.pro.telegrambot2.model.StatusTransition;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 
 @Repository
 public interface DogOwnerRepository extends JpaRepository<DogOwner, Integer> {
     DogOwner getOwnerByChatId(Long chatID);
     DogOwner findOwnerById(int id);
+
+    /* переводит всех овнеров из статуса from в статус to одним запросом и возвращает, кого перевели.
+     EXTENDED переводится, только если у овнера задан срок продления*/
+    @Transactional
+    @Query(value = "UPDATE dog_owners SET probationary_status = :to WHERE probationary_status = :from " +
+            "AND (probationary_status <> 'EXTENDED' OR period_extend > 0) " +
+            "RETURNING chat_id AS \"chatId\", name AS \"name\", period_extend AS \"periodExtend\"",
+            nativeQuery = true)
+    List<StatusTransition> transitionStatus(@Param("from") String from, @Param("to") String to);
+
+    /* статус меняется, только если с момента события его не успели сменить еще раз. UPDATE идет мимо
+     контекста персистентности, поэтому он очищается, и следующее чтение овнера вернет новый статус*/
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE DogOwner o SET o.probationaryStatus = :to WHERE o.id = :id AND o.probationaryStatus = :from")
+    int changeStatusIfCurrent(@Param("id") Integer id,
+                              @Param("from") ProbationaryStatus from,
+                              @Param("to") ProbationaryStatus to);
+
+    @Query("SELECT o FROM DogOwner o WHERE o.remindAt IS NOT NULL OR o.escalateAt IS NOT NULL")
+    List<DogOwner> findOwnersWithPendingReminders();
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE DogOwner o SET o.remindAt = :remindAt, o.escalateAt = :escalateAt WHERE o.id = :id")
+    int scheduleReminders(@Param("id") Integer id,
+                          @Param("remindAt") LocalDateTime remindAt,
+                          @Param("escalateAt") LocalDateTime escalateAt);
+
+    /* срок сбрасывается, только если он не был перезаписан более новым отчетом*/
+    @Transactional
+    @Modifying
+    @Query("UPDATE DogOwner o SET o.remindAt = NULL WHERE o.id = :id AND o.remindAt = :dueAt")
+    int clearRemindAt(@Param("id") Integer id, @Param("dueAt") LocalDateTime dueAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE DogOwner o SET o.escalateAt = NULL WHERE o.id = :id AND o.escalateAt = :dueAt")
+    int clearEscalateAt(@Param("id") Integer id, @Param("dueAt") LocalDateTime dueAt);
 }
@@ -0,0 +1,43 @@
+package sky.pro.telegrambot2.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import sky.pro.telegrambot2.enam.OutboxStatus;
+import sky.pro.telegrambot2.model.OutboxMessage;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    /*запрос который блокирует пачку сообщений, время отправки которых наступило. Строки, заблокированные
+     другим дрейнером, пропускаются*/
+    @Query(value = "SELECT * FROM outbox_messages WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxMessage> lockDueMessages(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.status = :status, m.sentAt = :sentAt WHERE m.id = :id")
+    void complete(@Param("id") Long id,
+                  @Param("status") OutboxStatus status,
+                  @Param("sentAt") LocalDateTime sentAt);
+
+    /* продлевает аренду сообщений, ответа Telegram на которые еще ждем*/
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.nextAttemptAt = :until WHERE m.id IN :ids")
+    void renewLease(@Param("ids") Collection<Long> ids, @Param("until") LocalDateTime until);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.attempts = m.attempts + 1, m.nextAttemptAt = :nextAttemptAt " +
+            "WHERE m.id = :id")
+    void reschedule(@Param("id") Long id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+}
@@ -0,0 +1,9 @@
+package sky.pro.telegrambot2.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import sky.pro.telegrambot2.model.StaticMedia;
+
+@Repository
+public interface StaticMediaRepository extends JpaRepository<StaticMedia, String> {
+}
@@ -0,0 +1,21 @@
+package sky.pro.telegrambot2.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import sky.pro.telegrambot2.model.UpdateWatermark;
+
+@Repository
+public interface UpdateWatermarkRepository extends JpaRepository<UpdateWatermark, String> {
+
+    /*граница только растет, поэтому запоздавшая запись меньшего значения ее не откатит*/
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO update_watermarks (name, update_id) VALUES (:name, :updateId) " +
+            "ON CONFLICT (name) DO UPDATE SET update_id = GREATEST(update_watermarks.update_id, excluded.update_id)",
+            nativeQuery = true)
+    void advance(@Param("name") String name, @Param("updateId") long updateId);
+}
@@ -7,6 +7,6 @@ import sky.pro.telegrambot2.model.UserContext;
 import java.util.Optional;
 
 @Repository
-public interface UserContextRepository extends JpaRepository<UserContext, Integer> {
+public interface UserContextRepository extends JpaRepository<UserContext, Integer>, UserContextRepositoryCustom {
     Optional <UserContext> findByChatId(Long chatId);
 }
\ No newline at end of file
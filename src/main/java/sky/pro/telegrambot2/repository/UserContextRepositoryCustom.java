@@ -0,0 +1,9 @@
+package sky.pro.telegrambot2.repository;
+
+import sky.pro.telegrambot2.model.UserContext;
+
+import java.util.Collection;
+
+public interface UserContextRepositoryCustom {
+    void upsertAll(Collection<UserContext> userContexts);
+}
@@ -0,0 +1,30 @@
+package sky.pro.telegrambot2.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import sky.pro.telegrambot2.model.UserContext;
+
+import java.util.Collection;
+
+/* id контекста - это chatId, он задается приложением, поэтому saveAll делает merge и на каждую
+ * строку сначала идет select. Здесь вся пачка уходит одним jdbc batch из insert ... on conflict*/
+public class UserContextRepositoryImpl implements UserContextRepositoryCustom {
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserContextRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public void upsertAll(Collection<UserContext> userContexts) {
+        jdbcTemplate.batchUpdate("INSERT INTO user_context (chat_id, cat_shelter, dog_shelter) VALUES (?, ?, ?) " +
+                        "ON CONFLICT (chat_id) DO UPDATE SET cat_shelter = excluded.cat_shelter, " +
+                        "dog_shelter = excluded.dog_shelter",
+                userContexts, userContexts.size(), (ps, userContext) -> {
+                    ps.setLong(1, userContext.getChatId());
+                    ps.setBoolean(2, userContext.isCatShelter());
+                    ps.setBoolean(3, userContext.isDogShelter());
+                });
+    }
+}
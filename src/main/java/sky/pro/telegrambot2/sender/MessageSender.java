@@ -0,0 +1,295 @@
+package sky.pro.telegrambot2.sender;
+
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.response.BaseResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import sky.pro.telegrambot2.exception.OutboundQueueFullException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* единая точка отправки запросов в Telegram. Запросы складываются в ограниченную очередь и отправляются
+ * одним потоком с учетом глобального лимита сообщений в секунду и лимита на каждый чат. Сама отправка
+ * асинхронная, продюсер сразу получает CompletableFuture и не ждет ответа Telegram.
+ * Пока запрос чата ждет повтора после ответа 429, следующие запросы этого чата придерживаются и уходят
+ * после него. Порядок может нарушиться только для запросов, которые уже были отправлены к моменту,
+ * когда пришел ответ 429*/
+@Service
+public class MessageSender {
+    private static final long BUCKET_CLEANUP_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    private final TelegramBot telegramBot;
+    private final TokenBucket globalBucket;
+    private final double chatRate;
+    private final int chatBurst;
+    private final int maxRetries;
+    private final Semaphore queueCapacity;
+    private final Map<Object, TokenBucket> chatBuckets = new ConcurrentHashMap<>();
+    private final Map<Object, ChatRetry> retryingChats = new ConcurrentHashMap<>();
+    private final DelayQueue<OutgoingRequest<?, ?>> queue = new DelayQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Logger logger = LoggerFactory.getLogger(MessageSender.class);
+    private Thread drainThread;
+
+    public MessageSender(TelegramBot telegramBot,
+                         @Value("${telegram.bot.sender.global-rate:30}") double globalRate,
+                         @Value("${telegram.bot.sender.chat-rate:1}") double chatRate,
+                         @Value("${telegram.bot.sender.chat-burst:3}") int chatBurst,
+                         @Value("${telegram.bot.sender.queue-capacity:10000}") int queueCapacity,
+                         @Value("${telegram.bot.sender.max-retries:3}") int maxRetries) {
+        this.telegramBot = telegramBot;
+        this.globalBucket = new TokenBucket(globalRate, 1);
+        this.chatRate = chatRate;
+        this.chatBurst = chatBurst;
+        this.maxRetries = maxRetries;
+        this.queueCapacity = new Semaphore(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        drainThread = new Thread(this::drain, "message-sender");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        drainThread.interrupt();
+    }
+
+    /* ставит запрос в очередь и возвращает future с ответом Telegram. Если очередь переполнена,
+     * future сразу завершается OutboundQueueFullException. Место сообщения в очереди чата резервируется
+     * в момент вызова, поэтому сообщения одного чата уходят в том порядке, в котором были отправлены*/
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> send(T request) {
+        return send(request, maxRetries);
+    }
+
+    /* то же, что send, но ответ 429 сразу возвращается вызывающему. Для тех, кто сам повторяет
+     * отправку, например outbox, чтобы повторы не шли в два слоя*/
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> sendWithoutRetry(T request) {
+        return send(request, 0);
+    }
+
+    private <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> send(T request, int maxRetries) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        if (!queueCapacity.tryAcquire()) {
+            logger.warn("Outbound queue is full, request {} rejected", request.getMethod());
+            future.completeExceptionally(new OutboundQueueFullException());
+            return future;
+        }
+        Object chatId = request.getParameters().get("chat_id");
+        queue.put(new OutgoingRequest<>(request, future, chatId, reserveChatSlot(chatId),
+                sequence.incrementAndGet(), 0, maxRetries));
+        return future;
+    }
+
+    /* значение retry_after из ответа Telegram с кодом 429, null если его нет*/
+    public static Integer retryAfter(BaseResponse response) {
+        if (response == null || response.errorCode() != 429 || response.parameters() == null) {
+            return null;
+        }
+        return response.parameters().retryAfter();
+    }
+
+    private long reserveChatSlot(Object chatId) {
+        long now = System.nanoTime();
+        if (chatId == null) {
+            return now;
+        }
+        long[] notBefore = new long[1];
+        chatBuckets.compute(chatId, (key, bucket) -> {
+            TokenBucket chatBucket = bucket != null ? bucket : new TokenBucket(chatRate, chatBurst);
+            notBefore[0] = chatBucket.reserve(now);
+            return chatBucket;
+        });
+        return notBefore[0];
+    }
+
+    private void drain() {
+        long lastCleanup = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                OutgoingRequest<?, ?> outgoing = queue.take();
+                if (holdBehindRetry(outgoing)) {
+                    continue;
+                }
+                queueCapacity.release();
+                long now = System.nanoTime();
+                long wait = globalBucket.reserve(now) - now;
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                outgoing.execute(telegramBot);
+                if (now - lastCleanup > BUCKET_CLEANUP_INTERVAL) {
+                    chatBuckets.keySet().forEach(chatId -> chatBuckets.computeIfPresent(chatId,
+                            (key, bucket) -> bucket.isIdle(now) ? null : bucket));
+                    lastCleanup = now;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    /* при ответе 429 запрос возвращается в очередь не раньше, чем через retry_after секунд, а его чат
+     * придерживается до окончательного ответа на этот запрос. Если чат уже ждет повтора другого запроса,
+     * повтор встает в очередь чата за ним*/
+    private boolean retryLater(OutgoingRequest<?, ?> outgoing, Integer retryAfter) {
+        if (retryAfter == null || outgoing.attempt >= outgoing.maxRetries || !queueCapacity.tryAcquire()) {
+            return false;
+        }
+        OutgoingRequest<?, ?> retry = outgoing.retry(System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfter));
+        boolean[] held = new boolean[1];
+        if (retry.chatId != null) {
+            retryingChats.compute(retry.chatId, (chatId, chatRetry) -> {
+                if (chatRetry == null) {
+                    return new ChatRetry(retry.sequence);
+                }
+                if (chatRetry.sequence != retry.sequence) {
+                    chatRetry.held.add(retry);
+                    held[0] = true;
+                }
+                return chatRetry;
+            });
+        }
+        if (!held[0]) {
+            queue.put(retry);
+        }
+        return true;
+    }
+
+    /* true, если запрос отложен до окончательного ответа на повтор другого запроса того же чата.
+     * Отложенный запрос продолжает занимать место в очереди*/
+    private boolean holdBehindRetry(OutgoingRequest<?, ?> outgoing) {
+        if (outgoing.chatId == null) {
+            return false;
+        }
+        boolean[] held = new boolean[1];
+        retryingChats.computeIfPresent(outgoing.chatId, (key, chatRetry) -> {
+            if (chatRetry.sequence != outgoing.sequence) {
+                chatRetry.held.add(outgoing);
+                held[0] = true;
+            }
+            return chatRetry;
+        });
+        return held[0];
+    }
+
+    /* запрос, повтора которого ждал чат, завершен: отложенные запросы чата возвращаются в очередь
+     * в исходном порядке, ни один не уходит раньше предыдущего*/
+    private void releaseChat(OutgoingRequest<?, ?> outgoing) {
+        if (outgoing.chatId == null) {
+            return;
+        }
+        ChatRetry[] released = new ChatRetry[1];
+        retryingChats.computeIfPresent(outgoing.chatId, (chatId, chatRetry) -> {
+            if (chatRetry.sequence != outgoing.sequence) {
+                return chatRetry;
+            }
+            released[0] = chatRetry;
+            return null;
+        });
+        if (released[0] == null) {
+            return;
+        }
+        released[0].held.sort(Comparator.comparingLong(held -> held.sequence));
+        long notBefore = Long.MIN_VALUE;
+        for (OutgoingRequest<?, ?> held : released[0].held) {
+            notBefore = Math.max(notBefore, held.notBefore);
+            queue.put(held.delayUntil(notBefore));
+        }
+    }
+
+    /* повтор запроса, которого ждет чат, и запросы чата, отложенные до его завершения*/
+    private static class ChatRetry {
+        private final long sequence;
+        private final List<OutgoingRequest<?, ?>> held = new ArrayList<>();
+
+        private ChatRetry(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    private class OutgoingRequest<T extends BaseRequest<T, R>, R extends BaseResponse> implements Delayed {
+        private final T request;
+        private final CompletableFuture<R> future;
+        private final Object chatId;
+        private final long notBefore;
+        private final long sequence;
+        private final int attempt;
+        private final int maxRetries;
+
+        private OutgoingRequest(T request, CompletableFuture<R> future, Object chatId, long notBefore,
+                                long sequence, int attempt, int maxRetries) {
+            this.request = request;
+            this.future = future;
+            this.chatId = chatId;
+            this.notBefore = notBefore;
+            this.sequence = sequence;
+            this.attempt = attempt;
+            this.maxRetries = maxRetries;
+        }
+
+        private OutgoingRequest<T, R> retry(long notBefore) {
+            return new OutgoingRequest<>(request, future, chatId, notBefore, sequence, attempt + 1, maxRetries);
+        }
+
+        private OutgoingRequest<T, R> delayUntil(long notBefore) {
+            return new OutgoingRequest<>(request, future, chatId, notBefore, sequence, attempt, maxRetries);
+        }
+
+        private void execute(TelegramBot telegramBot) {
+            OutgoingRequest<T, R> outgoing = this;
+            telegramBot.execute(request, new Callback<T, R>() {
+                @Override
+                public void onResponse(T request, R response) {
+                    if (response.isOk() || !retryLater(outgoing, retryAfter(response))) {
+                        if (!response.isOk()) {
+                            logger.warn("Telegram rejected {}: {} {}",
+                                    request.getMethod(), response.errorCode(), response.description());
+                        }
+                        releaseChat(outgoing);
+                        future.complete(response);
+                    }
+                }
+
+                @Override
+                public void onFailure(T request, IOException e) {
+                    releaseChat(outgoing);
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(notBefore - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            OutgoingRequest<?, ?> that = (OutgoingRequest<?, ?>) other;
+            int byTime = Long.compare(notBefore, that.notBefore);
+            return byTime != 0 ? byTime : Long.compare(sequence, that.sequence);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package sky.pro.telegrambot2.sender;
+
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import sky.pro.telegrambot2.enam.OutboxStatus;
+import sky.pro.telegrambot2.model.OutboxMessage;
+import sky.pro.telegrambot2.repository.OutboxMessageRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* транзакционный outbox для уведомлений. Сообщение записывается в таблицу outbox_messages в той же
+ * транзакции, что и изменение состояния, а дрейнер пачками отправляет его через MessageSender.
+ * Строка помечается отправленной только после ответа Telegram, поэтому рестарт или недоступность
+ * Telegram не теряют уведомления. Ответ 429 повторяет только outbox, по retry_after из ответа,
+ * MessageSender такие сообщения сам не повторяет*/
+@Service
+public class OutboxService {
+    private static final long MAX_BACKOFF_SECONDS = Duration.ofHours(1).getSeconds();
+    private static final int RENEW_CHUNK_SIZE = 1000;
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final MessageSender messageSender;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final Logger logger = LoggerFactory.getLogger(OutboxService.class);
+    private LocalDateTime leaseRenewedAt = LocalDateTime.MIN;
+
+    public OutboxService(OutboxMessageRepository outboxMessageRepository,
+                         MessageSender messageSender,
+                         TransactionTemplate transactionTemplate,
+                         @Value("${outbox.batch-size:100}") int batchSize,
+                         @Value("${outbox.max-attempts:10}") int maxAttempts,
+                         @Value("${outbox.lease:PT1M}") Duration lease) {
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.messageSender = messageSender;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.lease = lease;
+    }
+
+    /* присоединяется к транзакции вызывающего метода, если она есть*/
+    @Transactional
+    public void enqueue(Long chatId, String text) {
+        LocalDateTime now = LocalDateTime.now();
+        OutboxMessage message = new OutboxMessage();
+        message.setChatId(chatId);
+        message.setText(text);
+        message.setStatus(OutboxStatus.PENDING);
+        message.setCreatedAt(now);
+        message.setNextAttemptAt(now);
+        outboxMessageRepository.save(message);
+    }
+
+    /* дрейнер забирает пачку сообщений и сдвигает им время следующей попытки на lease, чтобы
+     * пока ждем ответа Telegram, их не забрал следующий проход или другой экземпляр приложения.
+     * Пока ответа нет, аренда продлевается, поэтому сообщение, долго стоящее в очереди MessageSender,
+     * не будет забрано и отправлено повторно. Новых сообщений забирается не больше, чем освободилось
+     * мест в пачке, так что в очереди MessageSender их не больше batchSize. Если экземпляр упал,
+     * его сообщения заберут другие после истечения аренды*/
+    @Scheduled(fixedDelayString = "${outbox.poll-interval:1000}")
+    public void drain() {
+        LocalDateTime now = LocalDateTime.now();
+        renewLeases(now);
+        int limit = batchSize - inFlight.size();
+        if (limit <= 0) {
+            return;
+        }
+        List<OutboxMessage> batch = transactionTemplate.execute(status -> {
+            List<OutboxMessage> due = outboxMessageRepository.lockDueMessages(now, limit);
+            due.forEach(message -> message.setNextAttemptAt(now.plus(lease)));
+            return due;
+        });
+        if (batch != null) {
+            batch.forEach(this::deliver);
+        }
+    }
+
+    /* аренда продлевается, когда прошла треть ее срока*/
+    private void renewLeases(LocalDateTime now) {
+        if (inFlight.isEmpty() || now.isBefore(leaseRenewedAt.plus(lease.dividedBy(3)))) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(inFlight);
+        for (int from = 0; from < ids.size(); from += RENEW_CHUNK_SIZE) {
+            outboxMessageRepository.renewLease(ids.subList(from, Math.min(from + RENEW_CHUNK_SIZE, ids.size())),
+                    now.plus(lease));
+        }
+        leaseRenewedAt = now;
+    }
+
+    /* сообщение, которое этот экземпляр уже отправляет, второй раз не отправляется*/
+    private void deliver(OutboxMessage message) {
+        if (!inFlight.add(message.getId())) {
+            return;
+        }
+        messageSender.sendWithoutRetry(new SendMessage(message.getChatId(), message.getText()))
+                .whenComplete((response, error) -> {
+                    try {
+                        handleResult(message, response, error);
+                    } catch (Exception e) {
+                        logger.error(e.getMessage(), e);
+                    } finally {
+                        inFlight.remove(message.getId());
+                    }
+                });
+    }
+
+    /* 429 - повторяем через retry_after, 5xx и сетевые ошибки - с экспоненциальной задержкой,
+     * остальные 4xx (бот заблокирован, чат не найден) повторять бессмысленно*/
+    private void handleResult(OutboxMessage message, SendResponse response, Throwable error) {
+        if (error == null && response.isOk()) {
+            outboxMessageRepository.complete(message.getId(), OutboxStatus.SENT, LocalDateTime.now());
+            return;
+        }
+        boolean retryable = error != null || response.errorCode() == 429 || response.errorCode() >= 500;
+        if (!retryable || message.getAttempts() + 1 >= maxAttempts) {
+            logger.warn("Outbox message {} to chat {} failed: {}", message.getId(), message.getChatId(),
+                    error != null ? error.getMessage() : response.description());
+            outboxMessageRepository.complete(message.getId(), OutboxStatus.FAILED, null);
+            return;
+        }
+        long delaySeconds = Math.min(1L << Math.min(message.getAttempts(), 20), MAX_BACKOFF_SECONDS);
+        Integer retryAfter = MessageSender.retryAfter(response);
+        if (retryAfter != null) {
+            delaySeconds = retryAfter;
+        }
+        outboxMessageRepository.reschedule(message.getId(), LocalDateTime.now().plusSeconds(delaySeconds));
+    }
+}
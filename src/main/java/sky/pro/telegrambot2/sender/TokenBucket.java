@@ -0,0 +1,29 @@
+package sky.pro.telegrambot2.sender;
+
+import java.util.concurrent.TimeUnit;
+
+/* token bucket в форме резервирования: вместо того чтобы хранить число жетонов, бакет хранит момент,
+ * когда освободится следующий жетон. reserve() сразу возвращает момент времени (System.nanoTime),
+ * не раньше которого можно отправить сообщение, поэтому резервирования одного бакета выдаются строго
+ * по порядку и не требуют блокировок снаружи*/
+public class TokenBucket {
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private long nextFreeAt = Long.MIN_VALUE;
+
+    public TokenBucket(double tokensPerSecond, int capacity) {
+        this.nanosPerToken = (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond);
+        this.burstNanos = nanosPerToken * (Math.max(capacity, 1) - 1);
+    }
+
+    public synchronized long reserve(long now) {
+        long start = nextFreeAt == Long.MIN_VALUE ? now : Math.max(nextFreeAt, now);
+        nextFreeAt = start + nanosPerToken;
+        return Math.max(now, start - burstNanos);
+    }
+
+    /* бакет простаивает, если все жетоны уже восстановились*/
+    public synchronized boolean isIdle(long now) {
+        return nextFreeAt == Long.MIN_VALUE || nextFreeAt <= now;
+    }
+}
@@ -1,30 +1,67 @@
 package sky.pro.telegrambot2.service;
 
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import sky.pro.telegrambot2.enam.ExportFormat;
+import sky.pro.telegrambot2.enam.ShelterType;
 import sky.pro.telegrambot2.exception.NotFoundException;
 import sky.pro.telegrambot2.model.CatOwner;
 import sky.pro.telegrambot2.model.CatOwnerReport;
+import sky.pro.telegrambot2.model.LastReport;
+import sky.pro.telegrambot2.model.ReportExportRow;
+import sky.pro.telegrambot2.model.ReportPhoto;
+import sky.pro.telegrambot2.model.ReportSummary;
 import sky.pro.telegrambot2.repository.CatOwnerReportRepository;
+import sky.pro.telegrambot2.storage.BlobResource;
+import sky.pro.telegrambot2.storage.BlobStore;
+import sky.pro.telegrambot2.storage.IngestedPhoto;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
 @Service
 public class CatOwnerReportService {
+    private static final String PHOTO_URL = "/cat-reports/photo/";
+
     private final CatOwnerReportRepository catOwnerReportRepository;
+    private final BlobStore blobStore;
+    private final ReminderService reminderService;
+    private final ReportExportWriter reportExportWriter;
 
-    public CatOwnerReportService(CatOwnerReportRepository catOwnerReportRepository) {
+    public CatOwnerReportService(CatOwnerReportRepository catOwnerReportRepository,
+                                  BlobStore blobStore,
+                                  ReminderService reminderService,
+                                  ReportExportWriter reportExportWriter) {
         this.catOwnerReportRepository = catOwnerReportRepository;
+        this.blobStore = blobStore;
+        this.reminderService = reminderService;
+        this.reportExportWriter = reportExportWriter;
     }
 
 
+    /* после сохранения отчета переносятся сроки напоминаний его овнера*/
     public void saveReport(CatOwnerReport report) {
         catOwnerReportRepository.save(report);
+        reportSaved(report.getCatOwner(), report.getDateOfLastReport());
+    }
+
+    private void reportSaved(CatOwner owner, LocalDateTime dateOfLastReport) {
+        if (owner != null && owner.getId() != null && dateOfLastReport != null) {
+            reminderService.reportSaved(ShelterType.CAT, owner.getId(), owner.getChatId(), owner.getName(),
+                    dateOfLastReport);
+        }
     }
 
-    public Optional<CatOwnerReport> findLastReportByOwnerId(Integer id) {
+    public Optional<LastReport> findLastReportByOwnerId(Integer id) {
         return Optional.ofNullable(catOwnerReportRepository.findLastReportByOwnerId(id));
     }
 
@@ -38,34 +75,47 @@ public class CatOwnerReportService {
         saveReport(report);
     }
 
-    public void saveTextInExistingReport(CatOwnerReport report,
+    /* отчет обновляется по id, без загрузки сущности*/
+    public void saveTextInExistingReport(LastReport report,
                                          String text,
                                          CatOwner owner,
                                          LocalDateTime localDateTime) {
-        report.setStringReport(text);
-        report.setCatOwner(owner);
-        report.setDateOfLastReport(localDateTime);
-        saveReport(report);
+        catOwnerReportRepository.updateText(report.getId(), text, localDateTime);
+        reportSaved(owner, localDateTime);
     }
 
-    public void saveImageInNewReport(byte[] image,
+    public void saveImageInNewReport(IngestedPhoto photo,
                                      CatOwner owner,
-                                     LocalDateTime localDateTime) {
+                                     LocalDateTime localDateTime) throws IOException {
         CatOwnerReport report = new CatOwnerReport();
-        report.setPhotoReport(image);
+        storePhoto(report, photo);
         report.setCatOwner(owner);
         report.setDateOfLastReport(localDateTime);
         saveReport(report);
     }
 
-    public void saveImageInExistingReport(CatOwnerReport report,
-                                          byte[] image,
+    public void saveImageInExistingReport(LastReport report,
+                                          IngestedPhoto photo,
                                           CatOwner owner,
-                                          LocalDateTime localDateTime) {
-        report.setPhotoReport(image);
-        report.setCatOwner(owner);
-        report.setDateOfLastReport(localDateTime);
-        saveReport(report);
+                                          LocalDateTime localDateTime) throws IOException {
+        putPhoto(photo);
+        catOwnerReportRepository.updatePhoto(report.getId(), photo.getSha256(), photo.getSize(), photo.getMimeType(),
+                localDateTime);
+        reportSaved(owner, localDateTime);
+    }
+
+    /* содержимое кладется в BlobStore под своим sha-256, в отчете остаются только ключ и метаданные*/
+    private void storePhoto(CatOwnerReport report, IngestedPhoto photo) throws IOException {
+        putPhoto(photo);
+        report.setPhotoKey(photo.getSha256());
+        report.setPhotoSize(photo.getSize());
+        report.setPhotoMime(photo.getMimeType());
+    }
+
+    private void putPhoto(IngestedPhoto photo) throws IOException {
+        try (InputStream content = photo.openStream()) {
+            blobStore.put(photo.getSha256(), content, photo.getSize(), photo.getMimeType());
+        }
     }
 
     public List<CatOwnerReport> findAllReports() {
@@ -75,4 +125,40 @@ public class CatOwnerReportService {
     public List<CatOwnerReport> findReportsByOwnerId(Integer ownerId) {
         return catOwnerReportRepository.findByCatOwnerId(ownerId);
     }
+
+    /* страница отчетов овнера без содержимого фото, фото скачивается по photoUrl*/
+    public Page<ReportSummary> findReportSummariesByOwnerId(Integer ownerId, Pageable pageable) {
+        Page<ReportSummary> summaries = catOwnerReportRepository.findSummariesByOwnerId(ownerId,
+                ReportSummary.toEntityPageable(pageable));
+        summaries.forEach(summary -> {
+            if (summary.getPhotoKey() != null) {
+                summary.setPhotoUrl(PHOTO_URL + summary.getId());
+            }
+        });
+        return summaries;
+    }
+
+    public ReportPhoto findPhotoByReportId(Integer reportId) {
+        return catOwnerReportRepository.findPhotoByReportId(reportId).orElseThrow(NotFoundException::new);
+    }
+
+    /* выгрузка отчетов за период [from, to) прямо в выходной поток, курсор открыт на время транзакции*/
+    @Transactional(readOnly = true)
+    public void exportReports(LocalDateTime from,
+                              LocalDateTime to,
+                              ExportFormat format,
+                              OutputStream out) throws IOException {
+        try (Stream<ReportExportRow> rows = catOwnerReportRepository.streamReportsBetween(from, to)) {
+            reportExportWriter.write(rows.peek(row -> {
+                if (row.getPhotoKey() != null) {
+                    row.setPhotoUrl(PHOTO_URL + row.getId());
+                }
+            }), format, out);
+        }
+    }
+
+    /* содержимое читается из BlobStore только когда ответ действительно отдается клиенту*/
+    public Resource openPhoto(ReportPhoto photo) {
+        return new BlobResource(blobStore, photo.getKey(), photo.getSize());
+    }
 }
\ No newline at end of file
@@ -1,11 +1,18 @@
 package sky.pro.telegrambot2.service;
 
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import sky.pro.telegrambot2.enam.ProbationaryStatus;
+import sky.pro.telegrambot2.enam.ShelterType;
+import sky.pro.telegrambot2.event.ProbationaryStatusChangedEvent;
 import sky.pro.telegrambot2.exception.AlreadyExistException;
 import sky.pro.telegrambot2.exception.NotFoundException;
 import sky.pro.telegrambot2.exception.WrongInputDataException;
 import sky.pro.telegrambot2.model.CatOwner;
+import sky.pro.telegrambot2.model.StatusTransition;
 import sky.pro.telegrambot2.repository.CatOwnerRepository;
 
 import java.time.LocalDateTime;
@@ -15,19 +22,42 @@ import java.util.Optional;
 
 @Service
 public class CatOwnerService {
+    private static final String CHAT_ID_NAME_KEY = "cat_owners_chat_id_name_key";
+
     private final CatOwnerRepository catOwnerRepository;
+    private final OwnerRegistry ownerRegistry;
+    private final ApplicationEventPublisher eventPublisher;
 
 
-    public CatOwnerService(CatOwnerRepository catOwnerRepository) {
+    public CatOwnerService(CatOwnerRepository catOwnerRepository,
+                           OwnerRegistry ownerRegistry,
+                           ApplicationEventPublisher eventPublisher) {
         this.catOwnerRepository = catOwnerRepository;
+        this.ownerRegistry = ownerRegistry;
+        this.eventPublisher = eventPublisher;
     }
 
     public void saveOwner(CatOwner owner) {
         catOwnerRepository.save(owner);
+        ownerRegistry.invalidate(owner.getChatId());
+    }
+
+    public boolean changeStatusIfCurrent(Integer id, Long chatId, ProbationaryStatus from, ProbationaryStatus to) {
+        boolean changed = catOwnerRepository.changeStatusIfCurrent(id, from, to) == 1;
+        ownerRegistry.invalidate(chatId);
+        return changed;
+    }
+
+    /* смена статуса выполняется в базе одним UPDATE ... RETURNING без загрузки овнеров,
+     * возвращаются овнеры, которых перевели в новый статус*/
+    public List<StatusTransition> transitionProbationaryStatus(ProbationaryStatus from, ProbationaryStatus to) {
+        List<StatusTransition> transitions = catOwnerRepository.transitionStatus(from.name(), to.name());
+        transitions.forEach(transition -> ownerRegistry.invalidate(transition.getChatId()));
+        return transitions;
     }
 
     public Optional <CatOwner> findCatOwnerByChatId(Long chatId) {
-        return Optional.ofNullable(catOwnerRepository.getOwnerByChatId(chatId));
+        return ownerRegistry.findCatOwner(chatId);
     }
 
     public List<CatOwner> findAllOwners() {
@@ -43,14 +73,19 @@ public class CatOwnerService {
         owner.setDateOfEndProbation(LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusDays(30));
         owner.setProbationaryStatus(ProbationaryStatus.ACTIVE);
 
-        catOwnerRepository.findAll()
-                .forEach(owners -> {
-                    if (owners.getName().equals(owner.getName()) &&
-                            owners.getChatId().equals(owner.getChatId())) {
-                        throw new AlreadyExistException();
-                    }
-                });
-        return catOwnerRepository.save(owner);
+        /* дубликаты отсекает уникальный индекс (chat_id, name). id берется из последовательности, и insert
+         * откладывается до flush, поэтому он выполняется сразу, чтобы нарушение индекса пришло отсюда же*/
+        CatOwner saved;
+        try {
+            saved = catOwnerRepository.saveAndFlush(owner);
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateOwner(e)) {
+                throw new AlreadyExistException();
+            }
+            throw e;
+        }
+        ownerRegistry.invalidate(owner.getChatId());
+        return saved;
     }
 
     public CatOwner findOwnerById(Integer id) {
@@ -61,6 +96,9 @@ public class CatOwnerService {
         return catOwnerRepository.findOwnerById(id);
     }
 
+    /* изменение сбрасывается в базу до события: слушатель в этой же транзакции пишет уведомление в outbox
+     * и переводит статус дальше отдельным UPDATE*/
+    @Transactional
     public CatOwner extendProbationaryPeriod(Integer id, Integer days) {
         CatOwner owner = findOwnerById(id);
         if (days < 0 || days > 15) {
@@ -69,14 +107,34 @@ public class CatOwnerService {
         owner.setPeriodExtend(days);
         owner.setDateOfEndProbation(owner.getDateOfEndProbation().plusDays(days));
         owner.setProbationaryStatus(ProbationaryStatus.EXTENDED);
-        catOwnerRepository.save(owner);
-        return owner;
+        catOwnerRepository.saveAndFlush(owner);
+        ownerRegistry.invalidate(owner.getChatId());
+        eventPublisher.publishEvent(new ProbationaryStatusChangedEvent(ShelterType.CAT, owner.getId(),
+                owner.getChatId(), owner.getProbationaryStatus(), owner.getPeriodExtend()));
+        /* слушатель события мог перевести статус дальше, поэтому овнер перечитывается*/
+        return catOwnerRepository.findOwnerById(id);
     }
 
+    @Transactional
     public CatOwner changeProbationaryStatus(Integer id, ProbationaryStatus status) {
         CatOwner owner = findOwnerById(id);
         owner.setProbationaryStatus(status);
-        catOwnerRepository.save(owner);
-        return owner;
+        catOwnerRepository.saveAndFlush(owner);
+        ownerRegistry.invalidate(owner.getChatId());
+        eventPublisher.publishEvent(new ProbationaryStatusChangedEvent(ShelterType.CAT, owner.getId(),
+                owner.getChatId(), owner.getProbationaryStatus(), owner.getPeriodExtend()));
+        /* слушатель события мог перевести статус дальше, поэтому овнер перечитывается*/
+        return catOwnerRepository.findOwnerById(id);
+    }
+
+    /* в ошибку "уже существует" превращается только нарушение индекса (chat_id, name), остальные нарушения
+     * (not null, внешние ключи) - это ошибки данных, их нельзя выдавать за дубликат*/
+    private static boolean isDuplicateOwner(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return CHAT_ID_NAME_KEY.equalsIgnoreCase(violation.getConstraintName());
+            }
+        }
+        return false;
     }
 }
\ No newline at end of file
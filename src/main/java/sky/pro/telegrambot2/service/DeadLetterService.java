@@ -0,0 +1,43 @@
+package sky.pro.telegrambot2.service;
+
+import com.google.gson.Gson;
+import com.pengrad.telegrambot.model.Update;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+import sky.pro.telegrambot2.model.DeadLetterUpdate;
+import sky.pro.telegrambot2.repository.DeadLetterUpdateRepository;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+
+/* апдейты, которые обработчик не смог обработать, откладываются в таблицу dead_letter_updates,
+ * чтобы один сломанный апдейт не останавливал обработку остальных и не терялся*/
+@Service
+public class DeadLetterService {
+    private static final Gson GSON = new Gson();
+    private static final int MAX_ERROR_LENGTH = 4000;
+
+    private final DeadLetterUpdateRepository deadLetterUpdateRepository;
+    private final Counter deadLettered;
+
+    public DeadLetterService(DeadLetterUpdateRepository deadLetterUpdateRepository,
+                             MeterRegistry meterRegistry) {
+        this.deadLetterUpdateRepository = deadLetterUpdateRepository;
+        this.deadLettered = meterRegistry.counter("bot.updates.dead-lettered");
+    }
+
+    public void deadLetter(Update update, Exception error) {
+        StringWriter stackTrace = new StringWriter();
+        error.printStackTrace(new PrintWriter(stackTrace));
+        DeadLetterUpdate deadLetter = new DeadLetterUpdate();
+        deadLetter.setUpdateId(update.updateId());
+        deadLetter.setPayload(GSON.toJson(update));
+        String trace = stackTrace.toString();
+        deadLetter.setError(trace.length() > MAX_ERROR_LENGTH ? trace.substring(0, MAX_ERROR_LENGTH) : trace);
+        deadLetter.setCreatedAt(LocalDateTime.now());
+        deadLetterUpdateRepository.save(deadLetter);
+        deadLettered.increment();
+    }
+}
@@ -1,27 +1,65 @@
 package sky.pro.telegrambot2.service;
 
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import sky.pro.telegrambot2.enam.ExportFormat;
+import sky.pro.telegrambot2.enam.ShelterType;
+import sky.pro.telegrambot2.exception.NotFoundException;
 import sky.pro.telegrambot2.model.DogOwner;
 import sky.pro.telegrambot2.model.DogOwnerReport;
+import sky.pro.telegrambot2.model.LastReport;
+import sky.pro.telegrambot2.model.ReportExportRow;
+import sky.pro.telegrambot2.model.ReportPhoto;
+import sky.pro.telegrambot2.model.ReportSummary;
 import sky.pro.telegrambot2.repository.DogOwnerReportRepository;
+import sky.pro.telegrambot2.storage.BlobResource;
+import sky.pro.telegrambot2.storage.BlobStore;
+import sky.pro.telegrambot2.storage.IngestedPhoto;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class DogOwnerReportService {
+    private static final String PHOTO_URL = "/dog-reports/photo/";
+
     private final DogOwnerReportRepository dogOwnerReportRepository;
+    private final BlobStore blobStore;
+    private final ReminderService reminderService;
+    private final ReportExportWriter reportExportWriter;
 
-    public DogOwnerReportService(DogOwnerReportRepository DogOwnerReportRepository) {
+    public DogOwnerReportService(DogOwnerReportRepository DogOwnerReportRepository,
+                                  BlobStore blobStore,
+                                  ReminderService reminderService,
+                                  ReportExportWriter reportExportWriter) {
         this.dogOwnerReportRepository = DogOwnerReportRepository;
+        this.blobStore = blobStore;
+        this.reminderService = reminderService;
+        this.reportExportWriter = reportExportWriter;
     }
 
+    /* после сохранения отчета переносятся сроки напоминаний его овнера*/
     public void saveReport(DogOwnerReport report) {
         dogOwnerReportRepository.save(report);
+        reportSaved(report.getDogOwner(), report.getDateOfLastReport());
+    }
+
+    private void reportSaved(DogOwner owner, LocalDateTime dateOfLastReport) {
+        if (owner != null && owner.getId() != null && dateOfLastReport != null) {
+            reminderService.reportSaved(ShelterType.DOG, owner.getId(), owner.getChatId(), owner.getName(),
+                    dateOfLastReport);
+        }
     }
 
-    public Optional<DogOwnerReport> findLastReportByOwnerId(Integer id) {
+    public Optional<LastReport> findLastReportByOwnerId(Integer id) {
         return Optional.ofNullable(dogOwnerReportRepository.findLastReportByOwnerId(id));
     }
 
@@ -35,34 +73,47 @@ public class DogOwnerReportService {
         saveReport(report);
     }
 
-    public void saveTextInExistingReport(DogOwnerReport report,
+    /* отчет обновляется по id, без загрузки сущности*/
+    public void saveTextInExistingReport(LastReport report,
                                          String text,
                                          DogOwner owner,
                                          LocalDateTime localDateTime) {
-        report.setStringReport(text);
-        report.setDogOwner(owner);
-        report.setDateOfLastReport(localDateTime);
-        saveReport(report);
+        dogOwnerReportRepository.updateText(report.getId(), text, localDateTime);
+        reportSaved(owner, localDateTime);
     }
 
-    public void saveImageInNewReport(byte[] image,
+    public void saveImageInNewReport(IngestedPhoto photo,
                                      DogOwner owner,
-                                     LocalDateTime localDateTime) {
+                                     LocalDateTime localDateTime) throws IOException {
         DogOwnerReport report = new DogOwnerReport();
-        report.setPhotoReport(image);
+        storePhoto(report, photo);
         report.setDogOwner(owner);
         report.setDateOfLastReport(localDateTime);
         saveReport(report);
     }
 
-    public void saveImageInExistingReport(DogOwnerReport report,
-                                          byte[] image,
+    public void saveImageInExistingReport(LastReport report,
+                                          IngestedPhoto photo,
                                           DogOwner owner,
-                                          LocalDateTime localDateTime) {
-        report.setPhotoReport(image);
-        report.setDogOwner(owner);
-        report.setDateOfLastReport(localDateTime);
-        saveReport(report);
+                                          LocalDateTime localDateTime) throws IOException {
+        putPhoto(photo);
+        dogOwnerReportRepository.updatePhoto(report.getId(), photo.getSha256(), photo.getSize(), photo.getMimeType(),
+                localDateTime);
+        reportSaved(owner, localDateTime);
+    }
+
+    /* содержимое кладется в BlobStore под своим sha-256, в отчете остаются только ключ и метаданные*/
+    private void storePhoto(DogOwnerReport report, IngestedPhoto photo) throws IOException {
+        putPhoto(photo);
+        report.setPhotoKey(photo.getSha256());
+        report.setPhotoSize(photo.getSize());
+        report.setPhotoMime(photo.getMimeType());
+    }
+
+    private void putPhoto(IngestedPhoto photo) throws IOException {
+        try (InputStream content = photo.openStream()) {
+            blobStore.put(photo.getSha256(), content, photo.getSize(), photo.getMimeType());
+        }
     }
 
     public List<DogOwnerReport> findAllReports() {
@@ -72,4 +123,40 @@ public class DogOwnerReportService {
     public List<DogOwnerReport> findReportsByOwnerId(Integer ownerId) {
         return dogOwnerReportRepository.findByDogOwnerId(ownerId);
     }
+
+    /* страница отчетов овнера без содержимого фото, фото скачивается по photoUrl*/
+    public Page<ReportSummary> findReportSummariesByOwnerId(Integer ownerId, Pageable pageable) {
+        Page<ReportSummary> summaries = dogOwnerReportRepository.findSummariesByOwnerId(ownerId,
+                ReportSummary.toEntityPageable(pageable));
+        summaries.forEach(summary -> {
+            if (summary.getPhotoKey() != null) {
+                summary.setPhotoUrl(PHOTO_URL + summary.getId());
+            }
+        });
+        return summaries;
+    }
+
+    public ReportPhoto findPhotoByReportId(Integer reportId) {
+        return dogOwnerReportRepository.findPhotoByReportId(reportId).orElseThrow(NotFoundException::new);
+    }
+
+    /* выгрузка отчетов за период [from, to) прямо в выходной поток, курсор открыт на время транзакции*/
+    @Transactional(readOnly = true)
+    public void exportReports(LocalDateTime from,
+                              LocalDateTime to,
+                              ExportFormat format,
+                              OutputStream out) throws IOException {
+        try (Stream<ReportExportRow> rows = dogOwnerReportRepository.streamReportsBetween(from, to)) {
+            reportExportWriter.write(rows.peek(row -> {
+                if (row.getPhotoKey() != null) {
+                    row.setPhotoUrl(PHOTO_URL + row.getId());
+                }
+            }), format, out);
+        }
+    }
+
+    /* содержимое читается из BlobStore только когда ответ действительно отдается клиенту*/
+    public Resource openPhoto(ReportPhoto photo) {
+        return new BlobResource(blobStore, photo.getKey(), photo.getSize());
+    }
 }
\ No newline at end of file
@@ -1,11 +1,18 @@
 package sky.pro.telegrambot2.service;
 
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import sky.pro.telegrambot2.enam.ProbationaryStatus;
+import sky.pro.telegrambot2.enam.ShelterType;
+import sky.pro.telegrambot2.event.ProbationaryStatusChangedEvent;
 import sky.pro.telegrambot2.exception.AlreadyExistException;
 import sky.pro.telegrambot2.exception.NotFoundException;
 import sky.pro.telegrambot2.exception.WrongInputDataException;
 import sky.pro.telegrambot2.model.DogOwner;
+import sky.pro.telegrambot2.model.StatusTransition;
 import sky.pro.telegrambot2.repository.DogOwnerRepository;
 
 import java.time.LocalDateTime;
@@ -15,18 +22,41 @@ import java.util.Optional;
 
 @Service
 public class DogOwnerService {
+    private static final String CHAT_ID_NAME_KEY = "dog_owners_chat_id_name_key";
+
     private final DogOwnerRepository ownerRepository;
+    private final OwnerRegistry ownerRegistry;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public DogOwnerService(DogOwnerRepository ownerRepository) {
+    public DogOwnerService(DogOwnerRepository ownerRepository,
+                           OwnerRegistry ownerRegistry,
+                           ApplicationEventPublisher eventPublisher) {
         this.ownerRepository = ownerRepository;
+        this.ownerRegistry = ownerRegistry;
+        this.eventPublisher = eventPublisher;
     }
 
     public void saveOwner(DogOwner owner) {
         ownerRepository.save(owner);
+        ownerRegistry.invalidate(owner.getChatId());
+    }
+
+    public boolean changeStatusIfCurrent(Integer id, Long chatId, ProbationaryStatus from, ProbationaryStatus to) {
+        boolean changed = ownerRepository.changeStatusIfCurrent(id, from, to) == 1;
+        ownerRegistry.invalidate(chatId);
+        return changed;
+    }
+
+    /* смена статуса выполняется в базе одним UPDATE ... RETURNING без загрузки овнеров,
+     * возвращаются овнеры, которых перевели в новый статус*/
+    public List<StatusTransition> transitionProbationaryStatus(ProbationaryStatus from, ProbationaryStatus to) {
+        List<StatusTransition> transitions = ownerRepository.transitionStatus(from.name(), to.name());
+        transitions.forEach(transition -> ownerRegistry.invalidate(transition.getChatId()));
+        return transitions;
     }
 
     public Optional<DogOwner> findDogOwnerByChatId(Long chatId) {
-        return Optional.ofNullable(ownerRepository.getOwnerByChatId(chatId));
+        return ownerRegistry.findDogOwner(chatId);
     }
 
     public List<DogOwner> findAllOwners() {
@@ -42,14 +72,19 @@ public class DogOwnerService {
         owner.setDateOfEndProbation(LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusDays(30));
         owner.setProbationaryStatus(ProbationaryStatus.ACTIVE);
 
-        ownerRepository.findAll()
-                .forEach(owners -> {
-                    if (owners.getName().equals(owner.getName()) &&
-                            owners.getChatId().equals(owner.getChatId())) {
-                        throw new AlreadyExistException();
-                    }
-                });
-        return ownerRepository.save(owner);
+        /* дубликаты отсекает уникальный индекс (chat_id, name). id берется из последовательности, и insert
+         * откладывается до flush, поэтому он выполняется сразу, чтобы нарушение индекса пришло отсюда же*/
+        DogOwner saved;
+        try {
+            saved = ownerRepository.saveAndFlush(owner);
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateOwner(e)) {
+                throw new AlreadyExistException();
+            }
+            throw e;
+        }
+        ownerRegistry.invalidate(owner.getChatId());
+        return saved;
     }
 
     public DogOwner findOwnerById(Integer id) {
@@ -60,6 +95,9 @@ public class DogOwnerService {
         return ownerRepository.findOwnerById(id);
     }
 
+    /* изменение сбрасывается в базу до события: слушатель в этой же транзакции пишет уведомление в outbox
+     * и переводит статус дальше отдельным UPDATE*/
+    @Transactional
     public DogOwner extendProbationaryPeriod(Integer id, Integer days) {
         DogOwner owner = findOwnerById(id);
         if (days < 0 || days > 15) {
@@ -68,14 +106,34 @@ public class DogOwnerService {
         owner.setPeriodExtend(days);
         owner.setDateOfEndProbation(owner.getDateOfEndProbation().plusDays(days));
         owner.setProbationaryStatus(ProbationaryStatus.EXTENDED);
-        ownerRepository.save(owner);
-        return owner;
+        ownerRepository.saveAndFlush(owner);
+        ownerRegistry.invalidate(owner.getChatId());
+        eventPublisher.publishEvent(new ProbationaryStatusChangedEvent(ShelterType.DOG, owner.getId(),
+                owner.getChatId(), owner.getProbationaryStatus(), owner.getPeriodExtend()));
+        /* слушатель события мог перевести статус дальше, поэтому овнер перечитывается*/
+        return ownerRepository.findOwnerById(id);
     }
 
+    @Transactional
     public DogOwner changeProbationaryStatus(Integer id, ProbationaryStatus status) {
         DogOwner owner = findOwnerById(id);
         owner.setProbationaryStatus(status);
-        ownerRepository.save(owner);
-        return owner;
+        ownerRepository.saveAndFlush(owner);
+        ownerRegistry.invalidate(owner.getChatId());
+        eventPublisher.publishEvent(new ProbationaryStatusChangedEvent(ShelterType.DOG, owner.getId(),
+                owner.getChatId(), owner.getProbationaryStatus(), owner.getPeriodExtend()));
+        /* слушатель события мог перевести статус дальше, поэтому овнер перечитывается*/
+        return ownerRepository.findOwnerById(id);
+    }
+
+    /* в ошибку "уже существует" превращается только нарушение индекса (chat_id, name), остальные нарушения
+     * (not null, внешние ключи) - это ошибки данных, их нельзя выдавать за дубликат*/
+    private static boolean isDuplicateOwner(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return CHAT_ID_NAME_KEY.equalsIgnoreCase(violation.getConstraintName());
+            }
+        }
+        return false;
     }
 }
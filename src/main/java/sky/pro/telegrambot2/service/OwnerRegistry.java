@@ -0,0 +1,68 @@
+package sky.pro.telegrambot2.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import sky.pro.telegrambot2.model.CatOwner;
+import sky.pro.telegrambot2.model.DogOwner;
+import sky.pro.telegrambot2.repository.CatOwnerRepository;
+import sky.pro.telegrambot2.repository.DogOwnerRepository;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/* общий кэш владельцев по chatId. На промахе одним обращением загружаются и владелец собаки, и владелец
+ * кошки, отсутствие владельца тоже кэшируется, поэтому обычный пользователь не приводит к запросам в базу
+ * на каждое сообщение. Сервисы владельцев сбрасывают запись при любом изменении владельца, а время жизни
+ * записи ограничено на случай, если волонтер поменял данные прямо в базе*/
+@Service
+public class OwnerRegistry {
+    private final DogOwnerRepository dogOwnerRepository;
+    private final CatOwnerRepository catOwnerRepository;
+    private final LoadingCache<Long, Owners> cache;
+
+    public OwnerRegistry(DogOwnerRepository dogOwnerRepository,
+                         CatOwnerRepository catOwnerRepository,
+                         MeterRegistry meterRegistry,
+                         @Value("${owner-registry.maximum-size:100000}") long maximumSize,
+                         @Value("${owner-registry.expire-after-write:PT5M}") Duration expireAfterWrite) {
+        this.dogOwnerRepository = dogOwnerRepository;
+        this.catOwnerRepository = catOwnerRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "ownerRegistry");
+    }
+
+    public Optional<DogOwner> findDogOwner(Long chatId) {
+        return cache.get(chatId).dogOwner;
+    }
+
+    public Optional<CatOwner> findCatOwner(Long chatId) {
+        return cache.get(chatId).catOwner;
+    }
+
+    public void invalidate(Long chatId) {
+        cache.invalidate(chatId);
+    }
+
+    private Owners load(Long chatId) {
+        return new Owners(Optional.ofNullable(dogOwnerRepository.getOwnerByChatId(chatId)),
+                Optional.ofNullable(catOwnerRepository.getOwnerByChatId(chatId)));
+    }
+
+    private static class Owners {
+        private final Optional<DogOwner> dogOwner;
+        private final Optional<CatOwner> catOwner;
+
+        private Owners(Optional<DogOwner> dogOwner, Optional<CatOwner> catOwner) {
+            this.dogOwner = dogOwner;
+            this.catOwner = catOwner;
+        }
+    }
+}
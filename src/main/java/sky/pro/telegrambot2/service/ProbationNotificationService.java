@@ -0,0 +1,117 @@
+package sky.pro.telegrambot2.service;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import sky.pro.telegrambot2.enam.ProbationaryStatus;
+import sky.pro.telegrambot2.enam.ShelterType;
+import sky.pro.telegrambot2.event.ProbationaryStatusChangedEvent;
+import sky.pro.telegrambot2.sender.OutboxService;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+
+/* уведомления овнеров о смене статуса испытательного срока. Волонтер ставит статус через REST, сервис
+ * овнеров публикует событие, и в той же транзакции уведомление пишется в outbox, а статус переводится
+ * в финальный, чтобы овнер не получил уведомление повторно. После коммита outbox сразу отправляется,
+ * не дожидаясь очередного прохода дрейнера. Статусы, выставленные напрямую в базе, подбирает
+ * периодический проход*/
+@Service
+public class ProbationNotificationService {
+    /* статус, который выставил волонтер -> статус после уведомления овнера*/
+    private static final Map<ProbationaryStatus, ProbationaryStatus> NOTIFIED_STATUSES =
+            new EnumMap<>(ProbationaryStatus.class);
+
+    static {
+        NOTIFIED_STATUSES.put(ProbationaryStatus.PASSED, ProbationaryStatus.FINALLY_PASSED);
+        NOTIFIED_STATUSES.put(ProbationaryStatus.NOT_PASSED, ProbationaryStatus.FINALLY_NOT_PASSED);
+        NOTIFIED_STATUSES.put(ProbationaryStatus.BAD_REPORTING, ProbationaryStatus.UNSATISFACTORY);
+        NOTIFIED_STATUSES.put(ProbationaryStatus.EXTENDED, ProbationaryStatus.FINALLY_EXTENDED);
+    }
+
+    private final DogOwnerService dogOwnerService;
+    private final CatOwnerService catOwnerService;
+    private final OutboxService outboxService;
+    private final TaskScheduler taskScheduler;
+    private final OwnerRegistry ownerRegistry;
+
+    public ProbationNotificationService(DogOwnerService dogOwnerService,
+                                        CatOwnerService catOwnerService,
+                                        OutboxService outboxService,
+                                        TaskScheduler taskScheduler,
+                                        OwnerRegistry ownerRegistry) {
+        this.dogOwnerService = dogOwnerService;
+        this.catOwnerService = catOwnerService;
+        this.outboxService = outboxService;
+        this.taskScheduler = taskScheduler;
+        this.ownerRegistry = ownerRegistry;
+    }
+
+    /* EXTENDED без срока продления, как и раньше, овнеру не сообщается*/
+    @EventListener
+    public void onStatusChanged(ProbationaryStatusChangedEvent event) {
+        ProbationaryStatus notified = NOTIFIED_STATUSES.get(event.getStatus());
+        if (notified == null
+                || event.getStatus() == ProbationaryStatus.EXTENDED && event.getPeriodExtend() <= 0) {
+            return;
+        }
+        boolean changed = event.getShelterType() == ShelterType.DOG
+                ? dogOwnerService.changeStatusIfCurrent(event.getOwnerId(), event.getChatId(),
+                event.getStatus(), notified)
+                : catOwnerService.changeStatusIfCurrent(event.getOwnerId(), event.getChatId(),
+                event.getStatus(), notified);
+        if (changed) {
+            outboxService.enqueue(event.getChatId(), message(event.getStatus(), event.getPeriodExtend()));
+        }
+    }
+
+    /* слушатель вызывается после коммита, когда транзакция уже завершена, поэтому дрейнер запускается
+     * в потоке планировщика со своей транзакцией. Кэш овнера сбрасывается еще раз, чтобы в нем не остался
+     * статус, прочитанный другим потоком до коммита*/
+    @TransactionalEventListener
+    public void afterStatusChanged(ProbationaryStatusChangedEvent event) {
+        ownerRegistry.invalidate(event.getChatId());
+        taskScheduler.schedule(outboxService::drain, Instant.now());
+    }
+
+    /* статусы, выставленные до запуска событий или напрямую в базе, уведомляются при старте и затем
+     * периодическим проходом. Каждый переход - один UPDATE ... RETURNING, строка достается только одному
+     * узлу, поэтому проход идет на всех узлах без аренды и овнера уведомит только один из них*/
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${probation.sweep-interval:59000}")
+    @Transactional
+    public void notifyPendingOwners() {
+        NOTIFIED_STATUSES.forEach((from, to) -> {
+            dogOwnerService.transitionProbationaryStatus(from, to).forEach(owner ->
+                    outboxService.enqueue(owner.getChatId(), message(from, owner.getPeriodExtend())));
+            catOwnerService.transitionProbationaryStatus(from, to).forEach(owner ->
+                    outboxService.enqueue(owner.getChatId(), message(from, owner.getPeriodExtend())));
+        });
+    }
+
+    static String message(ProbationaryStatus status, Integer periodExtend) {
+        switch (status) {
+            case PASSED:
+                return "Добрый день, поздравляем" +
+                        " ваш испытательный срок окончен";
+            case NOT_PASSED:
+                return "Добрый день" +
+                        " к сожалению вы не прошли испытательный срок, пожалуйста верните" +
+                        " животное в приют.";
+            case BAD_REPORTING:
+                return "Дорогой усыновитель, мы заметили, что вы заполняете" +
+                        " отчет не так подробно, как необходимо. Пожалуйста, подойди ответственнее к этому занятию." +
+                        " В противном случае волонтеры приюта будут обязаны самолично проверять условия" +
+                        " содержания собаки";
+            case EXTENDED:
+                return "Дорогой усыновитель, ваш испытаельный срок продлен на " + periodExtend + " дней";
+            default:
+                throw new IllegalArgumentException(status.name());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package sky.pro.telegrambot2.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import sky.pro.telegrambot2.enam.ReminderType;
+import sky.pro.telegrambot2.enam.ShelterType;
+import sky.pro.telegrambot2.model.CatOwner;
+import sky.pro.telegrambot2.model.DogOwner;
+import sky.pro.telegrambot2.repository.CatOwnerRepository;
+import sky.pro.telegrambot2.repository.DogOwnerRepository;
+import sky.pro.telegrambot2.sender.OutboxService;
+import sky.pro.telegrambot2.timer.HierarchicalTimingWheel;
+import sky.pro.telegrambot2.timer.Reminder;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* напоминания по отчетам. Когда овнер сохраняет отчет, в его строке записываются сроки напоминания
+ * овнеру и сообщения волонтеру, а в колесо таймеров ставятся соответствующие события. Срабатывание
+ * сбрасывает срок в базе и пишет сообщение в outbox одной транзакцией, поэтому напоминание не теряется
+ * при рестарте: при старте колесо заново строится по несброшенным срокам*/
+@Service
+public class ReminderService {
+    private static final int WHEEL_SIZE = 64;
+    private static final Duration RETRY_DELAY = Duration.ofMinutes(1);
+
+    private final DogOwnerRepository dogOwnerRepository;
+    private final CatOwnerRepository catOwnerRepository;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ownerDelay;
+    private final Duration volunteerDelay;
+    private final Long volunteerChatId;
+    private final HierarchicalTimingWheel<Reminder> wheel;
+    private final Map<String, HierarchicalTimingWheel.Timeout<Reminder>> scheduled = new ConcurrentHashMap<>();
+    private final Logger logger = LoggerFactory.getLogger(ReminderService.class);
+
+    public ReminderService(DogOwnerRepository dogOwnerRepository,
+                           CatOwnerRepository catOwnerRepository,
+                           OutboxService outboxService,
+                           TransactionTemplate transactionTemplate,
+                           @Value("${reminder.owner-delay:PT1M}") Duration ownerDelay,
+                           @Value("${reminder.volunteer-delay:PT2M}") Duration volunteerDelay,
+                           @Value("${reminder.tick:1000}") long tickMillis,
+                           @Value("${telegram.bot.volunteer-chat-id:5102380657}") Long volunteerChatId) {
+        this.dogOwnerRepository = dogOwnerRepository;
+        this.catOwnerRepository = catOwnerRepository;
+        this.outboxService = outboxService;
+        this.transactionTemplate = transactionTemplate;
+        this.ownerDelay = ownerDelay;
+        this.volunteerDelay = volunteerDelay;
+        this.volunteerChatId = volunteerChatId;
+        this.wheel = new HierarchicalTimingWheel<>(tickMillis, WHEEL_SIZE, System.currentTimeMillis());
+    }
+
+    /* восстанавливает колесо по срокам, сохраненным в базе. Просроченные события сработают на первом тике*/
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        for (DogOwner owner : dogOwnerRepository.findOwnersWithPendingReminders()) {
+            schedule(ShelterType.DOG, owner.getId(), owner.getChatId(), owner.getName(),
+                    owner.getRemindAt(), owner.getEscalateAt());
+        }
+        for (CatOwner owner : catOwnerRepository.findOwnersWithPendingReminders()) {
+            schedule(ShelterType.CAT, owner.getId(), owner.getChatId(), owner.getName(),
+                    owner.getRemindAt(), owner.getEscalateAt());
+        }
+        logger.info("Reminder wheel rebuilt with {} events", wheel.size());
+    }
+
+    /* новый отчет переносит сроки напоминаний овнера, события по предыдущему отчету отменяются*/
+    public void reportSaved(ShelterType shelterType, Integer ownerId, Long chatId, String name,
+                            LocalDateTime dateOfReport) {
+        LocalDateTime remindAt = dateOfReport.plus(ownerDelay).truncatedTo(ChronoUnit.SECONDS);
+        LocalDateTime escalateAt = dateOfReport.plus(volunteerDelay).truncatedTo(ChronoUnit.SECONDS);
+        if (shelterType == ShelterType.DOG) {
+            dogOwnerRepository.scheduleReminders(ownerId, remindAt, escalateAt);
+        } else {
+            catOwnerRepository.scheduleReminders(ownerId, remindAt, escalateAt);
+        }
+        schedule(shelterType, ownerId, chatId, name, remindAt, escalateAt);
+    }
+
+    @Scheduled(fixedRateString = "${reminder.tick:1000}")
+    public void tick() {
+        wheel.advance(System.currentTimeMillis()).forEach(this::fire);
+    }
+
+    private void schedule(ShelterType shelterType, Integer ownerId, Long chatId, String name,
+                          LocalDateTime remindAt, LocalDateTime escalateAt) {
+        if (remindAt != null) {
+            schedule(new Reminder(shelterType, ReminderType.REMIND_OWNER, ownerId, chatId, name, remindAt));
+        }
+        if (escalateAt != null) {
+            schedule(new Reminder(shelterType, ReminderType.ESCALATE_TO_VOLUNTEER, ownerId, chatId, name, escalateAt));
+        }
+    }
+
+    private void schedule(Reminder reminder) {
+        long deadline = reminder.getDueAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        HierarchicalTimingWheel.Timeout<Reminder> previous = scheduled.put(keyOf(reminder),
+                wheel.schedule(reminder, deadline));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /* событие отправляется, только если срок в базе все еще равен сроку события. Если транзакция не прошла,
+     * событие ставится в колесо повторно, срок в базе при этом остается и переживет рестарт*/
+    private void fire(Reminder reminder) {
+        scheduled.remove(keyOf(reminder));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (clearDueAt(reminder) == 0) {
+                    return;
+                }
+                if (reminder.getType() == ReminderType.REMIND_OWNER) {
+                    informOwner(reminder.getChatId());
+                } else {
+                    informVolunteer(reminder.getChatId(), reminder.getName());
+                }
+            });
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            wheel.schedule(reminder, System.currentTimeMillis() + RETRY_DELAY.toMillis());
+        }
+    }
+
+    private int clearDueAt(Reminder reminder) {
+        boolean remindOwner = reminder.getType() == ReminderType.REMIND_OWNER;
+        if (reminder.getShelterType() == ShelterType.DOG) {
+            return remindOwner
+                    ? dogOwnerRepository.clearRemindAt(reminder.getOwnerId(), reminder.getDueAt())
+                    : dogOwnerRepository.clearEscalateAt(reminder.getOwnerId(), reminder.getDueAt());
+        }
+        return remindOwner
+                ? catOwnerRepository.clearRemindAt(reminder.getOwnerId(), reminder.getDueAt())
+                : catOwnerRepository.clearEscalateAt(reminder.getOwnerId(), reminder.getDueAt());
+    }
+
+    private static String keyOf(Reminder reminder) {
+        return reminder.getShelterType() + ":" + reminder.getOwnerId() + ":" + reminder.getType();
+    }
+
+    /* если с даты последнего отчета прошел срок напоминания, этот метод информирует овнера, чтобы он
+     * заполнял отчеты лучше
+     */
+    private void informOwner(Long chatId) {
+        outboxService.enqueue(chatId, "Дорогой усыновитель, мы заметили," +
+                " что за последние сутки вы предоставляли не подробные отчеты о животном, пожалуйста" +
+                " отнеситесь серьезно к предоставлению отчетов");
+    }
+
+    /* если с даты последнего отчета прошел срок сообщения волонтеру, этот метод информирует волонтера,
+     * что овнер плохо заполняет отчеты
+     */
+    private void informVolunteer(Long chatId, String name) {
+        outboxService.enqueue(volunteerChatId, "Пользователь," +
+                " по имени: " + name + " id: " + chatId + " более двух суток не" +
+                " заполнял отчет, пожалуйста свяжитесь с ним");
+    }
+}
@@ -0,0 +1,82 @@
+package sky.pro.telegrambot2.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Service;
+import sky.pro.telegrambot2.enam.ExportFormat;
+import sky.pro.telegrambot2.model.ReportExportRow;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/* пишет выгрузку отчетов построчно: строка сериализуется и уходит в буфер ответа сразу после
+ * чтения из курсора, в памяти одновременно находится только одна строка*/
+@Service
+public class ReportExportWriter {
+    private static final String CSV_HEADER = "id,owner_id,owner_name,date,text,photo_size,photo_url";
+
+    private final ObjectWriter jsonWriter;
+
+    public ReportExportWriter(ObjectMapper objectMapper) {
+        this.jsonWriter = objectMapper.writerFor(ReportExportRow.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /* выходной поток не закрывается, им владеет вызывающий код*/
+    public void write(Stream<ReportExportRow> rows, ExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        Iterator<ReportExportRow> iterator = rows.iterator();
+        while (iterator.hasNext()) {
+            ReportExportRow row = iterator.next();
+            if (format == ExportFormat.CSV) {
+                writeCsv(writer, row);
+            } else {
+                jsonWriter.writeValue(writer, row);
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private void writeCsv(Writer writer, ReportExportRow row) throws IOException {
+        writer.write(csv(row.getId()));
+        writer.write(',');
+        writer.write(csv(row.getOwnerId()));
+        writer.write(',');
+        writer.write(csv(row.getOwnerName()));
+        writer.write(',');
+        writer.write(csv(row.getDate()));
+        writer.write(',');
+        writer.write(csv(row.getText()));
+        writer.write(',');
+        writer.write(csv(row.getPhotoSize()));
+        writer.write(',');
+        writer.write(csv(row.getPhotoUrl()));
+    }
+
+    /* значения с запятой, кавычкой или переводом строки берутся в кавычки по RFC 4180*/
+    static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
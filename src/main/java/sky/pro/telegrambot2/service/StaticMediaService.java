@@ -0,0 +1,116 @@
+package sky.pro.telegrambot2.service;
+
+import com.pengrad.telegrambot.model.PhotoSize;
+import com.pengrad.telegrambot.request.SendPhoto;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import sky.pro.telegrambot2.model.StaticMedia;
+import sky.pro.telegrambot2.repository.StaticMediaRepository;
+import sky.pro.telegrambot2.sender.MessageSender;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* отправка картинок из ресурсов приложения. Картинка читается из classpath один раз, при первой
+ * отправке загружается в Telegram, а полученный file_id сохраняется в таблицу static_media.
+ * Дальше картинка отправляется по file_id, без повторной загрузки*/
+@Service
+public class StaticMediaService {
+    private final StaticMediaRepository staticMediaRepository;
+    private final MessageSender messageSender;
+    private final Map<String, Media> media = new ConcurrentHashMap<>();
+    private final Logger logger = LoggerFactory.getLogger(StaticMediaService.class);
+
+    public StaticMediaService(StaticMediaRepository staticMediaRepository,
+                              MessageSender messageSender) {
+        this.staticMediaRepository = staticMediaRepository;
+        this.messageSender = messageSender;
+    }
+
+    public void sendPhoto(Long chatId, String resourceName) {
+        Media photo = media.computeIfAbsent(resourceName, this::load);
+        String fileId = photo.fileId;
+        if (fileId == null) {
+            upload(chatId, photo);
+            return;
+        }
+        messageSender.send(new SendPhoto(chatId, fileId)).whenComplete((response, error) -> {
+            /* file_id мог стать недействительным, например после смены токена бота*/
+            if (error == null && !response.isOk() && response.errorCode() == 400) {
+                logger.warn("Cached file_id of {} rejected: {}", resourceName, response.description());
+                photo.fileId = null;
+                upload(chatId, photo);
+            }
+        });
+    }
+
+    private void upload(Long chatId, Media photo) {
+        messageSender.send(new SendPhoto(chatId, photo.content)).whenComplete((response, error) -> {
+            try {
+                String fileId = largestFileId(response);
+                if (error == null && fileId != null) {
+                    remember(photo, fileId);
+                }
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+            }
+        });
+    }
+
+    private void remember(Media photo, String fileId) {
+        StaticMedia staticMedia = new StaticMedia();
+        staticMedia.setResourceName(photo.resourceName);
+        staticMedia.setSha256(photo.sha256);
+        staticMedia.setFileId(fileId);
+        staticMediaRepository.save(staticMedia);
+        photo.fileId = fileId;
+    }
+
+    private static String largestFileId(SendResponse response) {
+        if (response == null || !response.isOk() || response.message() == null
+                || response.message().photo() == null || response.message().photo().length == 0) {
+            return null;
+        }
+        PhotoSize[] sizes = response.message().photo();
+        return sizes[sizes.length - 1].fileId();
+    }
+
+    /* ресурс читается потоком, а не через файловую систему, поэтому работает и внутри jar*/
+    private Media load(String resourceName) {
+        try (InputStream in = new ClassPathResource(resourceName).getInputStream()) {
+            byte[] content = in.readAllBytes();
+            String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+            Media loaded = new Media(resourceName, content, sha256);
+            staticMediaRepository.findById(resourceName)
+                    .filter(stored -> sha256.equals(stored.getSha256()))
+                    .ifPresent(stored -> loaded.fileId = stored.getFileId());
+            return loaded;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Media {
+        private final String resourceName;
+        private final byte[] content;
+        private final String sha256;
+        private volatile String fileId;
+
+        private Media(String resourceName, byte[] content, String sha256) {
+            this.resourceName = resourceName;
+            this.content = content;
+            this.sha256 = sha256;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package sky.pro.telegrambot2.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import sky.pro.telegrambot2.model.UserContext;
+import sky.pro.telegrambot2.repository.UserContextRepository;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* выбранный пользователем приют хранится в ограниченном кэше по chatId. Чтение идет из кэша,
+ * при промахе контекст загружается из базы. Изменения пишутся в кэш сразу, а в базу пачкой
+ * по расписанию: несколько нажатий одного пользователя между сбросами дают одну запись*/
+@Service
+public class UserContextService {
+    private final UserContextRepository userContextRepository;
+    private final LoadingCache<Long, UserContext> cache;
+    private final Map<Long, UserContext> dirty = new ConcurrentHashMap<>();
+    private final Logger logger = LoggerFactory.getLogger(UserContextService.class);
+
+    public UserContextService(UserContextRepository userContextRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${user-context.cache.maximum-size:100000}") long maximumSize,
+                              @Value("${user-context.cache.expire-after-access:PT1H}") Duration expireAfterAccess) {
+        this.userContextRepository = userContextRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userContext");
+    }
+
+    /* возвращает контекст пользователя, если пользователь еще не выбирал приют - пустой контекст*/
+    public UserContext getContext(Long chatId) {
+        return cache.get(chatId);
+    }
+
+    public void chooseDogShelter(Long chatId) {
+        update(chatId, true, false);
+    }
+
+    public void chooseCatShelter(Long chatId) {
+        update(chatId, false, true);
+    }
+
+    /* записывает в базу накопленные изменения. Запись удаляется из очереди, только если после
+     * снимка ее не успели изменить, иначе более новое значение уйдет следующим сбросом*/
+    @Scheduled(fixedDelayString = "${user-context.flush-interval:1000}")
+    @PreDestroy
+    public void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<UserContext> batch = new ArrayList<>(dirty.values());
+        try {
+            userContextRepository.upsertAll(batch);
+            batch.forEach(userContext -> dirty.remove(userContext.getChatId(), userContext));
+        } catch (Exception e) {
+            logger.error("Failed to flush {} user contexts", batch.size(), e);
+        }
+    }
+
+    private void update(Long chatId, boolean dogShelter, boolean catShelter) {
+        UserContext current = cache.get(chatId);
+        if (current.isDogShelter() == dogShelter && current.isCatShelter() == catShelter) {
+            return;
+        }
+        UserContext userContext = new UserContext();
+        userContext.setChatId(chatId);
+        userContext.setDogShelter(dogShelter);
+        userContext.setCatShelter(catShelter);
+        dirty.put(chatId, userContext);
+        cache.put(chatId, userContext);
+    }
+
+    /* еще не записанное в базу значение важнее того, что лежит в базе*/
+    private UserContext load(Long chatId) {
+        UserContext pending = dirty.get(chatId);
+        if (pending != null) {
+            return pending;
+        }
+        return userContextRepository.findByChatId(chatId).orElseGet(() -> {
+            UserContext userContext = new UserContext();
+            userContext.setChatId(chatId);
+            return userContext;
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package sky.pro.telegrambot2.storage;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/* объект BlobStore в виде Resource с известной длиной. В отличие от InputStreamResource его можно
+ * открыть повторно, поэтому Spring MVC сам обрабатывает для него заголовок Range*/
+public class BlobResource extends AbstractResource {
+    private final BlobStore blobStore;
+    private final String key;
+    private final long size;
+
+    public BlobResource(BlobStore blobStore, String key, long size) {
+        this.blobStore = blobStore;
+        this.key = key;
+        this.size = size;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return blobStore.open(key);
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return size;
+    }
+
+    @Override
+    public String getFilename() {
+        return key;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Blob [" + key + "]";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || (other instanceof BlobResource
+                && key.equals(((BlobResource) other).key));
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+}
@@ -0,0 +1,14 @@
+package sky.pro.telegrambot2.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/* хранилище содержимого фото отчетов. Ключом служит sha-256 содержимого, поэтому одинаковые фото
+ * хранятся один раз, а повторный put с тем же ключом ничего не делает*/
+public interface BlobStore {
+    void put(String key, InputStream content, long size, String contentType) throws IOException;
+
+    InputStream open(String key) throws IOException;
+
+    boolean exists(String key) throws IOException;
+}
@@ -0,0 +1,60 @@
+package sky.pro.telegrambot2.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/* хранит фото в локальной директории, файлы раскладываются по подкаталогам из первых символов ключа,
+ * чтобы в одном каталоге не оказывалось сотни тысяч файлов. Файл сначала пишется во временный,
+ * а потом атомарно переименовывается, поэтому читатель никогда не видит недописанный файл*/
+@Component
+@ConditionalOnProperty(name = "storage.blob.type", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemBlobStore implements BlobStore {
+    private final Path root;
+
+    public FileSystemBlobStore(@Value("${storage.blob.fs.root:data/blobs}") String root) {
+        this.root = Paths.get(root);
+    }
+
+    @Override
+    public void put(String key, InputStream content, long size, String contentType) throws IOException {
+        Path target = pathOf(key);
+        if (Files.exists(target)) {
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        Path tempFile = Files.createTempFile(target.getParent(), key, ".part");
+        try {
+            Files.copy(content, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        Path path = pathOf(key);
+        if (!Files.exists(path)) {
+            throw new FileNotFoundException(key);
+        }
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(pathOf(key));
+    }
+
+    private Path pathOf(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+}
@@ -0,0 +1,47 @@
+package sky.pro.telegrambot2.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/* фото, один раз скачанное из Telegram во временный файл. Хранит sha-256, размер и mime тип,
+ * содержимое читается потоком сколько угодно раз. close() удаляет временный файл*/
+public class IngestedPhoto implements AutoCloseable {
+    private final Path file;
+    private final String sha256;
+    private final long size;
+    private final String mimeType;
+
+    public IngestedPhoto(Path file, String sha256, long size, String mimeType) {
+        this.file = file;
+        this.sha256 = sha256;
+        this.size = size;
+        this.mimeType = mimeType;
+    }
+
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(file);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
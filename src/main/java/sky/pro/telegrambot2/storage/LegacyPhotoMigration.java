@@ -0,0 +1,99 @@
+package sky.pro.telegrambot2.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/* при старте переносит фото, сохраненные раньше в BYTEA колонке photo_report, в BlobStore.
+ * Строки обрабатываются небольшими пачками, после переноса photo_report обнуляется,
+ * поэтому повторный запуск продолжает с того места, где остановился. Фото, которое не удалось
+ * перенести, остается в photo_report и не мешает старту, его перенос повторится при следующем запуске*/
+@Component
+public class LegacyPhotoMigration implements ApplicationRunner {
+    private static final List<String> REPORT_TABLES = List.of("dog_owner_reports", "cat_owner_reports");
+    private static final String DEFAULT_MIME_TYPE = "image/jpeg";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore blobStore;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Logger logger = LoggerFactory.getLogger(LegacyPhotoMigration.class);
+
+    public LegacyPhotoMigration(JdbcTemplate jdbcTemplate,
+                                BlobStore blobStore,
+                                @Value("${storage.blob.migrate-legacy:true}") boolean enabled,
+                                @Value("${storage.blob.migrate-batch-size:20}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        for (String table : REPORT_TABLES) {
+            int migrated = 0;
+            int failed = 0;
+            int lastId = 0;
+            List<Map<String, Object>> batch;
+            do {
+                batch = jdbcTemplate.queryForList("SELECT id, photo_report FROM " + table +
+                        " WHERE photo_report IS NOT NULL AND id > ? ORDER BY id LIMIT ?", lastId, batchSize);
+                for (Map<String, Object> row : batch) {
+                    lastId = (Integer) row.get("id");
+                    try {
+                        migrate(table, lastId, (byte[]) row.get("photo_report"));
+                        migrated++;
+                    } catch (IOException | RuntimeException e) {
+                        logger.error("Could not move photo of {} id={} to blob store", table, lastId, e);
+                        failed++;
+                    }
+                }
+            } while (batch.size() == batchSize);
+            if (migrated > 0) {
+                logger.info("Moved {} photos from {} to blob store", migrated, table);
+            }
+            if (failed > 0) {
+                logger.warn("{} photos of {} were left in photo_report", failed, table);
+            }
+        }
+    }
+
+    private void migrate(String table, Integer id, byte[] photo) throws IOException {
+        String key = sha256(photo);
+        String mimeType = URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(photo));
+        if (mimeType == null) {
+            mimeType = DEFAULT_MIME_TYPE;
+        }
+        try (InputStream content = new ByteArrayInputStream(photo)) {
+            blobStore.put(key, content, photo.length, mimeType);
+        }
+        jdbcTemplate.update("UPDATE " + table + " SET photo_key = ?, photo_size = ?, photo_mime = ?," +
+                " photo_report = NULL WHERE id = ?", key, (long) photo.length, mimeType, id);
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package sky.pro.telegrambot2.storage;
+
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.File;
+import com.pengrad.telegrambot.model.PhotoSize;
+import com.pengrad.telegrambot.request.GetFile;
+import com.pengrad.telegrambot.response.GetFileResponse;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/* этап приема фото: файл скачивается из Telegram один раз, потоком пишется во временный файл
+ * и по дороге считается его sha-256. Результат общий для отчетов владельца собаки и кошки*/
+@Service
+public class PhotoIngestionService {
+    private static final String DEFAULT_MIME_TYPE = "image/jpeg";
+
+    private final TelegramBot telegramBot;
+
+    public PhotoIngestionService(TelegramBot telegramBot) {
+        this.telegramBot = telegramBot;
+    }
+
+    public IngestedPhoto ingest(PhotoSize photoSize) throws IOException {
+        GetFileResponse getFileResponse = telegramBot.execute(new GetFile(photoSize.fileId()));
+        if (!getFileResponse.isOk()) {
+            throw new IOException("GetFile failed: " + getFileResponse.description());
+        }
+        File file = getFileResponse.file();
+        MessageDigest digest = sha256();
+        Path tempFile = Files.createTempFile("photo-", ".tmp");
+        try (InputStream in = new DigestInputStream(new URL(telegramBot.getFullFilePath(file)).openStream(), digest)) {
+            long size = Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            return new IngestedPhoto(tempFile, HexFormat.of().formatHex(digest.digest()), size, mimeTypeOf(file));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    private static String mimeTypeOf(File file) {
+        String mimeType = file.filePath() != null ? URLConnection.guessContentTypeFromName(file.filePath()) : null;
+        return mimeType != null ? mimeType : DEFAULT_MIME_TYPE;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
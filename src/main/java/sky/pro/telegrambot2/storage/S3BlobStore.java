@@ -0,0 +1,157 @@
+package sky.pro.telegrambot2.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+
+/* хранит фото в S3 совместимом хранилище (MinIO, LocalStack и т.п.) по path-style адресам
+ * endpoint/bucket/key. Запросы подписываются AWS Signature V4, ключ объекта и есть sha-256 тела,
+ * поэтому хэш payload не пересчитывается. Если access-key пустой, запросы уходят без подписи*/
+@Component
+@ConditionalOnProperty(name = "storage.blob.type", havingValue = "s3")
+public class S3BlobStore implements BlobStore {
+    private static final String EMPTY_PAYLOAD_SHA256 =
+            "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter DATE_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final URI endpoint;
+    private final String bucket;
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+
+    public S3BlobStore(@Value("${storage.blob.s3.endpoint}") String endpoint,
+                       @Value("${storage.blob.s3.bucket}") String bucket,
+                       @Value("${storage.blob.s3.region:us-east-1}") String region,
+                       @Value("${storage.blob.s3.access-key:}") String accessKey,
+                       @Value("${storage.blob.s3.secret-key:}") String secretKey) {
+        this.endpoint = URI.create(endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint);
+        this.bucket = bucket;
+        this.region = region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+    }
+
+    @Override
+    public void put(String key, InputStream content, long size, String contentType) throws IOException {
+        if (exists(key)) {
+            return;
+        }
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(
+                HttpRequest.BodyPublishers.ofInputStream(() -> content), size);
+        HttpRequest request = request("PUT", key, key)
+                .header("Content-Type", contentType)
+                .method("PUT", body)
+                .build();
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("S3 PUT " + key + " failed: " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        HttpRequest request = request("GET", key, EMPTY_PAYLOAD_SHA256).GET().build();
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() == 200) {
+            return response.body();
+        }
+        response.body().close();
+        if (response.statusCode() == 404) {
+            throw new FileNotFoundException(key);
+        }
+        throw new IOException("S3 GET " + key + " failed: " + response.statusCode());
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        HttpRequest request = request("HEAD", key, EMPTY_PAYLOAD_SHA256)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        int status = send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status == 200) {
+            return true;
+        }
+        if (status == 404) {
+            return false;
+        }
+        throw new IOException("S3 HEAD " + key + " failed: " + status);
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        try {
+            return httpClient.send(request, bodyHandler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private HttpRequest.Builder request(String method, String key, String payloadSha256) {
+        String path = endpoint.getRawPath() + "/" + bucket + "/" + key;
+        HttpRequest.Builder builder = HttpRequest.newBuilder(endpoint.resolve(path))
+                .timeout(Duration.ofSeconds(30));
+        if (accessKey.isEmpty()) {
+            return builder;
+        }
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = AMZ_DATE.format(now);
+        String dateStamp = DATE_STAMP.format(now);
+        String host = endpoint.getPort() == -1 ? endpoint.getHost() : endpoint.getHost() + ":" + endpoint.getPort();
+        String signedHeaders = "host;x-amz-content-sha256;x-amz-date";
+        String canonicalRequest = method + "\n" + path + "\n\n" +
+                "host:" + host + "\n" +
+                "x-amz-content-sha256:" + payloadSha256 + "\n" +
+                "x-amz-date:" + amzDate + "\n\n" +
+                signedHeaders + "\n" + payloadSha256;
+        String scope = dateStamp + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + sha256Hex(canonicalRequest);
+        byte[] signingKey = hmac(hmac(hmac(hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8),
+                dateStamp), region), "s3"), "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+        return builder
+                .header("x-amz-date", amzDate)
+                .header("x-amz-content-sha256", payloadSha256)
+                .header("Authorization", "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope +
+                        ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String value) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package sky.pro.telegrambot2.timer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/* иерархическое колесо таймеров. Время делится на тики по tickMillis, каждый уровень колеса состоит
+ * из wheelSize корзин, корзина уровня L покрывает wheelSize^L тиков. Задача кладется в корзину самого
+ * младшего уровня, в пределах оборота которого лежит ее срок, и по мере приближения срока спускается
+ * на уровень ниже. Постановка и срабатывание стоят O(1), спуск происходит не больше числа уровней раз.
+ * Колесо не создает своих потоков: владелец периодически вызывает advance и сам выполняет задачи*/
+public class HierarchicalTimingWheel<T> {
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<ArrayDeque<Timeout<T>>[]> levels = new ArrayList<>();
+    private final List<Long> ticksPerBucket = new ArrayList<>();
+    private final ArrayDeque<Timeout<T>> expired = new ArrayDeque<>();
+    private long currentTick;
+    private int pending;
+
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException();
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTick = startMillis / tickMillis;
+        addLevel();
+    }
+
+    /* срок округляется вверх до тика, поэтому задача никогда не срабатывает раньше срока.
+     * Задача с уже прошедшим сроком сработает при ближайшем advance*/
+    public synchronized Timeout<T> schedule(T task, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(task, Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis));
+        insert(timeout);
+        pending++;
+        return timeout;
+    }
+
+    /* сдвигает колесо до момента nowMillis и возвращает задачи, срок которых наступил*/
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<T> fired = new ArrayList<>();
+        collect(expired, fired);
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = levels.size() - 1; level > 0; level--) {
+                long bucketTicks = ticksPerBucket.get(level);
+                if (currentTick % bucketTicks == 0) {
+                    ArrayDeque<Timeout<T>> bucket = levels.get(level)[(int) ((currentTick / bucketTicks) % wheelSize)];
+                    Timeout<T> timeout;
+                    while ((timeout = bucket.poll()) != null) {
+                        insert(timeout);
+                    }
+                }
+            }
+            collect(levels.get(0)[(int) (currentTick % wheelSize)], fired);
+            collect(expired, fired);
+        }
+        return fired;
+    }
+
+    public synchronized int size() {
+        return pending;
+    }
+
+    private void insert(Timeout<T> timeout) {
+        if (timeout.cancelled) {
+            pending--;
+            return;
+        }
+        if (timeout.deadlineTick <= currentTick) {
+            expired.add(timeout);
+            return;
+        }
+        int level = 0;
+        while (timeout.deadlineTick / (ticksPerBucket.get(level) * wheelSize)
+                != currentTick / (ticksPerBucket.get(level) * wheelSize)) {
+            level++;
+            if (level == levels.size()) {
+                addLevel();
+            }
+        }
+        long bucketTicks = ticksPerBucket.get(level);
+        levels.get(level)[(int) ((timeout.deadlineTick / bucketTicks) % wheelSize)].add(timeout);
+    }
+
+    private void collect(ArrayDeque<Timeout<T>> bucket, List<T> fired) {
+        Timeout<T> timeout;
+        while ((timeout = bucket.poll()) != null) {
+            pending--;
+            if (!timeout.cancelled) {
+                fired.add(timeout.task);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addLevel() {
+        ArrayDeque<Timeout<T>>[] buckets = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        ticksPerBucket.add(levels.isEmpty() ? 1L : Math.multiplyExact(ticksPerBucket.get(levels.size() - 1), wheelSize));
+        levels.add(buckets);
+    }
+
+    /* отмененная задача остается в своей корзине и выбрасывается, когда колесо до нее дойдет*/
+    public static final class Timeout<T> {
+        private final T task;
+        private final long deadlineTick;
+        private volatile boolean cancelled;
+
+        private Timeout(T task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getTask() {
+            return task;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package sky.pro.telegrambot2.timer;
+
+import sky.pro.telegrambot2.enam.ReminderType;
+import sky.pro.telegrambot2.enam.ShelterType;
+
+import java.time.LocalDateTime;
+
+/* событие колеса таймеров: напомнить овнеру об отчете или сообщить волонтеру.
+ * dueAt совпадает со значением колонки remind_at/escalate_at овнера, по нему событие сверяется с базой*/
+public class Reminder {
+    private final ShelterType shelterType;
+    private final ReminderType type;
+    private final Integer ownerId;
+    private final Long chatId;
+    private final String name;
+    private final LocalDateTime dueAt;
+
+    public Reminder(ShelterType shelterType, ReminderType type, Integer ownerId, Long chatId, String name,
+                    LocalDateTime dueAt) {
+        this.shelterType = shelterType;
+        this.type = type;
+        this.ownerId = ownerId;
+        this.chatId = chatId;
+        this.name = name;
+        this.dueAt = dueAt;
+    }
+
+    public ShelterType getShelterType() {
+        return shelterType;
+    }
+
+    public ReminderType getType() {
+        return type;
+    }
+
+    public Integer getOwnerId() {
+        return ownerId;
+    }
+
+    public Long getChatId() {
+        return chatId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LocalDateTime getDueAt() {
+        return dueAt;
+    }
+}
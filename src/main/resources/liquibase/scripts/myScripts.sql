@@ -74,4 +74,129 @@ CREATE TABLE if not exists cat_owner_reports
     string_report TEXT,
     last_report   timestamp,
     cat_owner_id  INTEGER
-);
\ No newline at end of file
+);
+
+-- changeset jk:2
+
+CREATE TABLE if not exists outbox_messages
+(
+    id              BIGSERIAL NOT NULL PRIMARY KEY,
+    chat_id         BIGINT    NOT NULL,
+    text            TEXT      NOT NULL,
+    status          TEXT      NOT NULL,
+    attempts        INTEGER   NOT NULL DEFAULT 0,
+    next_attempt_at timestamp NOT NULL,
+    created_at      timestamp NOT NULL,
+    sent_at         timestamp
+);
+CREATE INDEX if not exists outbox_messages_pending_idx
+    ON outbox_messages (next_attempt_at, id) WHERE status = 'PENDING';
+
+-- changeset jk:3
+
+ALTER TABLE dog_owner_reports
+    ADD COLUMN if not exists photo_key  TEXT,
+    ADD COLUMN if not exists photo_size BIGINT,
+    ADD COLUMN if not exists photo_mime TEXT;
+ALTER TABLE cat_owner_reports
+    ADD COLUMN if not exists photo_key  TEXT,
+    ADD COLUMN if not exists photo_size BIGINT,
+    ADD COLUMN if not exists photo_mime TEXT;
+
+-- changeset jk:4
+
+CREATE INDEX if not exists dog_owner_reports_owner_last_report_idx
+    ON dog_owner_reports (dog_owner_id, last_report DESC, id DESC);
+CREATE INDEX if not exists cat_owner_reports_owner_last_report_idx
+    ON cat_owner_reports (cat_owner_id, last_report DESC, id DESC);
+
+-- changeset jk:5
+
+CREATE INDEX if not exists dog_owners_probationary_status_idx ON dog_owners (probationary_status);
+CREATE INDEX if not exists cat_owners_probationary_status_idx ON cat_owners (probationary_status);
+CREATE INDEX if not exists dog_owner_reports_last_report_idx ON dog_owner_reports (last_report);
+CREATE INDEX if not exists cat_owner_reports_last_report_idx ON cat_owner_reports (last_report);
+
+-- changeset jk:6
+
+ALTER TABLE dog_owners
+    ADD COLUMN if not exists remind_at   timestamp,
+    ADD COLUMN if not exists escalate_at timestamp;
+ALTER TABLE cat_owners
+    ADD COLUMN if not exists remind_at   timestamp,
+    ADD COLUMN if not exists escalate_at timestamp;
+CREATE INDEX if not exists dog_owners_pending_reminders_idx ON dog_owners (id)
+    WHERE remind_at IS NOT NULL OR escalate_at IS NOT NULL;
+CREATE INDEX if not exists cat_owners_pending_reminders_idx ON cat_owners (id)
+    WHERE remind_at IS NOT NULL OR escalate_at IS NOT NULL;
+
+-- changeset jk:7
+
+CREATE INDEX if not exists dog_owners_chat_id_idx ON dog_owners (chat_id);
+CREATE INDEX if not exists cat_owners_chat_id_idx ON cat_owners (chat_id);
+
+-- changeset jk:8
+-- preconditions onFail:HALT onError:HALT
+-- precondition-sql-check expectedResult:0 SELECT COUNT(*) FROM (SELECT chat_id, name FROM dog_owners GROUP BY chat_id, name HAVING COUNT(*) > 1) AS duplicates
+-- precondition-sql-check expectedResult:0 SELECT COUNT(*) FROM (SELECT chat_id, name FROM cat_owners GROUP BY chat_id, name HAVING COUNT(*) > 1) AS duplicates
+
+CREATE UNIQUE INDEX if not exists dog_owners_chat_id_name_key ON dog_owners (chat_id, name);
+CREATE UNIQUE INDEX if not exists cat_owners_chat_id_name_key ON cat_owners (chat_id, name);
+
+-- changeset jk:9
+
+CREATE TABLE if not exists static_media
+(
+    resource_name TEXT NOT NULL PRIMARY KEY,
+    sha256        TEXT NOT NULL,
+    file_id       TEXT NOT NULL
+);
+
+-- changeset jk:10
+
+CREATE TABLE if not exists dead_letter_updates
+(
+    id         BIGSERIAL NOT NULL PRIMARY KEY,
+    update_id  INTEGER   NOT NULL,
+    payload    TEXT      NOT NULL,
+    error      TEXT,
+    created_at timestamp NOT NULL
+);
+
+-- changeset jk:11
+
+CREATE TABLE if not exists cluster_nodes
+(
+    node_id      TEXT      NOT NULL PRIMARY KEY,
+    url          TEXT,
+    heartbeat_at timestamp NOT NULL
+);
+
+CREATE TABLE if not exists cluster_leases
+(
+    name       TEXT      NOT NULL PRIMARY KEY,
+    owner      TEXT      NOT NULL,
+    expires_at timestamp NOT NULL
+);
+
+-- changeset jk:12
+
+CREATE TABLE if not exists update_watermarks
+(
+    name      TEXT   NOT NULL PRIMARY KEY,
+    update_id BIGINT NOT NULL
+);
+
+-- changeset jk:13
+-- comment: id выдаются блоками по 50 (allocationSize в @SequenceGenerator), шаг последовательностей должен совпадать
+
+ALTER SEQUENCE dog_shelter_users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE cat_shelter_users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE dog_owners_id_seq INCREMENT BY 50;
+ALTER SEQUENCE cat_owners_id_seq INCREMENT BY 50;
+ALTER SEQUENCE dogs_id_seq INCREMENT BY 50;
+ALTER SEQUENCE cats_id_seq INCREMENT BY 50;
+ALTER SEQUENCE dog_owner_reports_id_seq INCREMENT BY 50;
+ALTER SEQUENCE cat_owner_reports_id_seq INCREMENT BY 50;
+ALTER SEQUENCE outbox_messages_id_seq INCREMENT BY 50;
+ALTER SEQUENCE dead_letter_updates_id_seq INCREMENT BY 50;
@@ -0,0 +1,129 @@
+package sky.pro.telegrambot2.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sky.pro.telegrambot2.enam.IngestionMode;
+import sky.pro.telegrambot2.model.ClusterNode;
+import sky.pro.telegrambot2.repository.ClusterLeaseRepository;
+import sky.pro.telegrambot2.repository.ClusterNodeRepository;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ClusterCoordinatorTest {
+    private static final int PARTITIONS = 64;
+
+    @Mock
+    private ClusterNodeRepository clusterNodeRepository;
+    @Mock
+    private ClusterLeaseRepository clusterLeaseRepository;
+
+    private ClusterCoordinator coordinator(String nodeId, IngestionMode ingestionMode) {
+        return new ClusterCoordinator(clusterNodeRepository, clusterLeaseRepository, nodeId,
+                "http://" + nodeId, Duration.ofSeconds(15), PARTITIONS, ingestionMode);
+    }
+
+    private static ClusterNode node(String nodeId) {
+        ClusterNode node = new ClusterNode();
+        node.setNodeId(nodeId);
+        node.setUrl("http://" + nodeId);
+        return node;
+    }
+
+    @Test
+    public void leaseIsHeldOnlyAfterSuccessfulAcquire() {
+        ClusterCoordinator coordinator = coordinator("node-1", IngestionMode.POLLING);
+        when(clusterNodeRepository.findLiveNodes(15)).thenReturn(List.of(node("node-1")));
+        when(clusterLeaseRepository.tryAcquire(ClusterCoordinator.POLLING_LEASE, "node-1", 15))
+                .thenReturn(1, 0);
+
+        assertThat(coordinator.isLeader(ClusterCoordinator.POLLING_LEASE)).isFalse();
+        coordinator.heartbeat();
+        assertThat(coordinator.isLeader(ClusterCoordinator.POLLING_LEASE)).isTrue();
+        coordinator.heartbeat();
+        assertThat(coordinator.isLeader(ClusterCoordinator.POLLING_LEASE)).isFalse();
+    }
+
+    @Test
+    public void webhookNodeDoesNotTakePollingLease() {
+        ClusterCoordinator coordinator = coordinator("node-1", IngestionMode.WEBHOOK);
+        when(clusterNodeRepository.findLiveNodes(15)).thenReturn(List.of(node("node-1")));
+
+        coordinator.heartbeat();
+
+        assertThat(coordinator.isLeader(ClusterCoordinator.POLLING_LEASE)).isFalse();
+        verify(clusterLeaseRepository, never()).tryAcquire(any(), any(), anyLong());
+    }
+
+    @Test
+    public void leaseExpiresLocallyWithoutRenewal() {
+        ClusterCoordinator coordinator = new ClusterCoordinator(clusterNodeRepository, clusterLeaseRepository,
+                "node-1", "http://node-1", Duration.ZERO, PARTITIONS, IngestionMode.POLLING);
+        when(clusterNodeRepository.findLiveNodes(0)).thenReturn(List.of(node("node-1")));
+        when(clusterLeaseRepository.tryAcquire(any(), eq("node-1"), eq(0L))).thenReturn(1);
+
+        coordinator.heartbeat();
+
+        assertThat(coordinator.isLeader(ClusterCoordinator.POLLING_LEASE)).isFalse();
+    }
+
+    @Test
+    public void nodeOwnsEverythingUntilClusterIsKnown() {
+        ClusterCoordinator coordinator = coordinator("node-1", IngestionMode.WEBHOOK);
+
+        assertThat(coordinator.remoteOwnerUrl(42L)).isEmpty();
+    }
+
+    @Test
+    public void nodesAgreeOnPartitionOwners() {
+        List<ClusterNode> nodes = List.of(node("node-1"), node("node-2"), node("node-3"));
+        ClusterCoordinator first = coordinator("node-1", IngestionMode.WEBHOOK);
+        ClusterCoordinator second = coordinator("node-2", IngestionMode.WEBHOOK);
+        first.assignPartitions(nodes);
+        second.assignPartitions(nodes);
+
+        for (long chatId = 0; chatId < 1000; chatId++) {
+            String firstView = first.remoteOwnerUrl(chatId).orElse("http://node-1");
+            String secondView = second.remoteOwnerUrl(chatId).orElse("http://node-2");
+            assertThat(firstView).isEqualTo(secondView);
+        }
+    }
+
+    @Test
+    public void onlyPartitionsOfFailedNodeMove() {
+        ClusterCoordinator coordinator = coordinator("node-1", IngestionMode.WEBHOOK);
+        coordinator.assignPartitions(List.of(node("node-1"), node("node-2"), node("node-3")));
+        Map<Long, String> before = owners(coordinator);
+
+        coordinator.assignPartitions(List.of(node("node-1"), node("node-3")));
+        Map<Long, String> after = owners(coordinator);
+
+        assertThat(before.values()).contains("http://node-1", "http://node-2", "http://node-3");
+        assertThat(after.values()).doesNotContain("http://node-2");
+        before.forEach((chatId, owner) -> {
+            if (!owner.equals("http://node-2")) {
+                assertThat(after.get(chatId)).isEqualTo(owner);
+            }
+        });
+    }
+
+    private static Map<Long, String> owners(ClusterCoordinator coordinator) {
+        Map<Long, String> owners = new HashMap<>();
+        for (long chatId = 0; chatId < 1000; chatId++) {
+            Optional<String> remote = coordinator.remoteOwnerUrl(chatId);
+            owners.put(chatId, remote.orElse("http://node-1"));
+        }
+        return owners;
+    }
+}
@@ -0,0 +1,58 @@
+package sky.pro.telegrambot2.cluster;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebhookForwarderTest {
+    /* на этом порту никто не слушает, соединение сразу отклоняется*/
+    private static final String UNREACHABLE_OWNER = "http://127.0.0.1:1";
+
+    private WebhookForwarder webhookForwarder;
+
+    @AfterEach
+    public void tearDown() {
+        webhookForwarder.stop();
+    }
+
+    @Test
+    public void failedForwardCallsFallbackInBackground() throws Exception {
+        webhookForwarder = new WebhookForwarder(new RestTemplateBuilder(), "/telegram/webhook", 1, 10);
+        CountDownLatch fallback = new CountDownLatch(1);
+
+        assertThat(webhookForwarder.forwardAsync(UNREACHABLE_OWNER, "X-Secret", "secret", "{}",
+                fallback::countDown)).isTrue();
+
+        assertThat(fallback.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void fullForwardQueueIsRejected() throws Exception {
+        webhookForwarder = new WebhookForwarder(new RestTemplateBuilder(), "/telegram/webhook", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blockWorker = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        try {
+            assertThat(webhookForwarder.forwardAsync(UNREACHABLE_OWNER, "X-Secret", "secret", "{}", blockWorker))
+                    .isTrue();
+            TimeUnit.MILLISECONDS.sleep(500);
+            assertThat(webhookForwarder.forwardAsync(UNREACHABLE_OWNER, "X-Secret", "secret", "{}", () -> {
+            })).isTrue();
+            assertThat(webhookForwarder.forwardAsync(UNREACHABLE_OWNER, "X-Secret", "secret", "{}", () -> {
+            })).isFalse();
+        } finally {
+            release.countDown();
+        }
+    }
+}
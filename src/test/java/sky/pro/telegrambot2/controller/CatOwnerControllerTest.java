@@ -15,6 +15,7 @@ import sky.pro.telegrambot2.repository.CatOwnerRepository;
 import sky.pro.telegrambot2.repository.DogOwnerRepository;
 import sky.pro.telegrambot2.service.CatOwnerService;
 import sky.pro.telegrambot2.service.DogOwnerService;
+import sky.pro.telegrambot2.service.OwnerRegistry;
 
 import java.time.LocalDateTime;
 
@@ -33,6 +34,9 @@ class CatOwnerControllerTest {
     @MockBean
     private CatOwnerRepository catOwnerRepository;
 
+    @MockBean
+    private OwnerRegistry ownerRegistry;
+
     @SpyBean
     private CatOwnerService catOwnerService;
 
@@ -52,7 +56,7 @@ class CatOwnerControllerTest {
         owner.setChatId(chatId);
 
 
-        when(catOwnerRepository.save(any(CatOwner.class))).thenReturn(owner);
+        when(catOwnerRepository.saveAndFlush(any(CatOwner.class))).thenReturn(owner);
         when(catOwnerRepository.findOwnerById(id)).thenReturn(owner);
 
         mockMvc.perform(MockMvcRequestBuilders
@@ -83,7 +87,7 @@ class CatOwnerControllerTest {
         owner.setPeriodExtend(days);
 
 
-        when(catOwnerRepository.save(any(CatOwner.class))).thenReturn(owner);
+        when(catOwnerRepository.saveAndFlush(any(CatOwner.class))).thenReturn(owner);
         when(catOwnerRepository.findOwnerById(id)).thenReturn(owner);
 
         mockMvc.perform(MockMvcRequestBuilders
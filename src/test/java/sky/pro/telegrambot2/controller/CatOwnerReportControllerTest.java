@@ -6,6 +6,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
@@ -13,17 +15,24 @@ import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.web.bind.annotation.RequestMapping;
 import sky.pro.telegrambot2.model.CatOwner;
 import sky.pro.telegrambot2.model.CatOwnerReport;
+import sky.pro.telegrambot2.model.ReportSummary;
 import sky.pro.telegrambot2.model.DogOwner;
 import sky.pro.telegrambot2.model.DogOwnerReport;
 import sky.pro.telegrambot2.repository.CatOwnerReportRepository;
 import sky.pro.telegrambot2.repository.DogOwnerReportRepository;
 import sky.pro.telegrambot2.service.CatOwnerReportService;
 import sky.pro.telegrambot2.service.DogOwnerReportService;
+import sky.pro.telegrambot2.service.ReminderService;
+import sky.pro.telegrambot2.service.ReportExportWriter;
+import sky.pro.telegrambot2.storage.BlobStore;
 
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = pro.sky.telegrambot2.controller.CatOwnerReportController.class)
@@ -38,6 +47,15 @@ class CatOwnerReportControllerTest {
     @MockBean
     private CatOwnerReportRepository catOwnerReportRepository;
 
+    @MockBean
+    private BlobStore blobStore;
+
+    @MockBean
+    private ReminderService reminderService;
+
+    @MockBean
+    private ReportExportWriter reportExportWriter;
+
     @SpyBean
     private CatOwnerReportService catOwnerReportService;
 
@@ -63,14 +81,21 @@ class CatOwnerReportControllerTest {
         report1.setCatOwner(owner);
         report2.setCatOwner(owner);
 
-        when(catOwnerReportRepository.findByCatOwnerId(ownerId)).thenReturn(List.of(report1, report2));
+        ReportSummary summary1 = new ReportSummary(report1.getId(), null, stringReport1, null, null);
+        ReportSummary summary2 = new ReportSummary(report2.getId(), null, stringReport2, 2048L, "abcdef");
+        when(catOwnerReportRepository.findSummariesByOwnerId(eq(ownerId), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(summary1, summary2)));
 
         mockMvc.perform(MockMvcRequestBuilders
                         .get("/cat-reports/{ownerId}", ownerId)
                         .contentType(MediaType.APPLICATION_JSON)
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isAccepted())
-                .andExpect(MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(
-                        List.of(report1, report2))));
+                .andExpect(jsonPath("$.content[0].text").value(stringReport1))
+                .andExpect(jsonPath("$.content[0].photoUrl").doesNotExist())
+                .andExpect(jsonPath("$.content[1].photoSize").value(2048))
+                .andExpect(jsonPath("$.content[1].photoUrl").value("/cat-reports/photo/" + report2.getId()))
+                .andExpect(jsonPath("$.content[1].photoKey").doesNotExist())
+                .andExpect(jsonPath("$.totalElements").value(2));
     }
 }
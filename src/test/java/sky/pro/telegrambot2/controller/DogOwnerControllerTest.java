@@ -12,6 +12,7 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import sky.pro.telegrambot2.model.DogOwner;
 import sky.pro.telegrambot2.repository.DogOwnerRepository;
 import sky.pro.telegrambot2.service.DogOwnerService;
+import sky.pro.telegrambot2.service.OwnerRegistry;
 
 import java.time.LocalDateTime;
 
@@ -29,6 +30,9 @@ class DogOwnerControllerTest {
     @MockBean
     private DogOwnerRepository dogOwnerRepository;
 
+    @MockBean
+    private OwnerRegistry ownerRegistry;
+
     @SpyBean
     private DogOwnerService dogOwnerService;
 
@@ -48,7 +52,7 @@ class DogOwnerControllerTest {
         owner.setName(name);
         owner.setChatId(chatId);
 
-        when(dogOwnerRepository.save(any(DogOwner.class))).thenReturn(owner);
+        when(dogOwnerRepository.saveAndFlush(any(DogOwner.class))).thenReturn(owner);
         when(dogOwnerRepository.findOwnerById(id)).thenReturn(owner);
 
         mockMvc.perform(MockMvcRequestBuilders
@@ -99,7 +103,7 @@ class DogOwnerControllerTest {
         owner.setPeriodExtend(days);
 
 
-        when(dogOwnerRepository.save(any(DogOwner.class))).thenReturn(owner);
+        when(dogOwnerRepository.saveAndFlush(any(DogOwner.class))).thenReturn(owner);
         when(dogOwnerRepository.findOwnerById(id)).thenReturn(owner);
 
         mockMvc.perform(MockMvcRequestBuilders
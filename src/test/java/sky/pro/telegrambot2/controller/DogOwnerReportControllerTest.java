@@ -6,18 +6,36 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import sky.pro.telegrambot2.model.DogOwner;
 import sky.pro.telegrambot2.model.DogOwnerReport;
+import sky.pro.telegrambot2.model.ReportPhoto;
+import sky.pro.telegrambot2.model.ReportSummary;
 import sky.pro.telegrambot2.repository.DogOwnerReportRepository;
 import sky.pro.telegrambot2.service.DogOwnerReportService;
+import sky.pro.telegrambot2.service.ReminderService;
+import sky.pro.telegrambot2.service.ReportExportWriter;
+import sky.pro.telegrambot2.storage.BlobStore;
 
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = pro.sky.telegrambot2.controller.DogOwnerReportController.class)
@@ -31,6 +49,15 @@ class DogOwnerReportControllerTest {
     @MockBean
     private DogOwnerReportRepository dogOwnerReportRepository;
 
+    @MockBean
+    private BlobStore blobStore;
+
+    @MockBean
+    private ReminderService reminderService;
+
+    @MockBean
+    private ReportExportWriter reportExportWriter;
+
     @SpyBean
     private DogOwnerReportService dogOwnerReportService;
 
@@ -56,14 +83,73 @@ class DogOwnerReportControllerTest {
         report1.setDogOwner(owner);
         report2.setDogOwner(owner);
 
-        when(dogOwnerReportRepository.findByDogOwnerId(ownerId)).thenReturn(List.of(report1,report2));
+        ReportSummary summary1 = new ReportSummary(report1.getId(), null, stringReport1, null, null);
+        ReportSummary summary2 = new ReportSummary(report2.getId(), null, stringReport2, 2048L, "abcdef");
+        when(dogOwnerReportRepository.findSummariesByOwnerId(eq(ownerId), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(summary1, summary2)));
 
         mockMvc.perform(MockMvcRequestBuilders
                         .get("/dog-reports/{ownerId}", ownerId)
                         .contentType(MediaType.APPLICATION_JSON)
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isAccepted())
-                .andExpect(MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(
-                        List.of(report1, report2))));
+                .andExpect(jsonPath("$.content[0].text").value(stringReport1))
+                .andExpect(jsonPath("$.content[0].photoUrl").doesNotExist())
+                .andExpect(jsonPath("$.content[1].photoSize").value(2048))
+                .andExpect(jsonPath("$.content[1].photoUrl").value("/dog-reports/photo/" + report2.getId()))
+                .andExpect(jsonPath("$.content[1].photoKey").doesNotExist())
+                .andExpect(jsonPath("$.totalElements").value(2));
+    }
+
+    @Test
+    void test_findReportsByOwnerId_mapsSortToEntityProperty() throws Exception {
+        Integer ownerId = 2;
+        when(dogOwnerReportRepository.findSummariesByOwnerId(eq(ownerId), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of()));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/dog-reports/{ownerId}", ownerId)
+                        .param("sort", "text,asc")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isAccepted());
+
+        verify(dogOwnerReportRepository).findSummariesByOwnerId(eq(ownerId),
+                argThat(pageable -> pageable.getSort().equals(Sort.by(Sort.Direction.ASC, "stringReport"))));
+    }
+
+    @Test
+    void test_findReportsByOwnerId_unknownSort() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/dog-reports/{ownerId}", 2)
+                        .param("sort", "dogOwner")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verify(dogOwnerReportRepository, never()).findSummariesByOwnerId(any(), any());
+    }
+
+    @Test
+    void test_downloadPhoto() throws Exception {
+        String key = "abcdef";
+        byte[] content = "photo-content".getBytes();
+        when(dogOwnerReportRepository.findPhotoByReportId(1))
+                .thenReturn(Optional.of(new ReportPhoto(key, (long) content.length, "image/jpeg",
+                        LocalDateTime.of(2023, 5, 1, 12, 0))));
+        when(blobStore.open(key)).thenAnswer(invocation -> new ByteArrayInputStream(content));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/dog-reports/photo/{reportId}", 1))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"" + key + "\""))
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.IMAGE_JPEG))
+                .andExpect(MockMvcResultMatchers.content().bytes(content));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/dog-reports/photo/{reportId}", 1)
+                        .header(HttpHeaders.RANGE, "bytes=0-4"))
+                .andExpect(status().isPartialContent())
+                .andExpect(MockMvcResultMatchers.content().bytes("photo".getBytes()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/dog-reports/photo/{reportId}", 1)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"" + key + "\""))
+                .andExpect(status().isNotModified());
     }
 }
@@ -0,0 +1,154 @@
+package sky.pro.telegrambot2.controller;
+
+import com.pengrad.telegrambot.UpdatesListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import sky.pro.telegrambot2.cluster.ClusterCoordinator;
+import sky.pro.telegrambot2.cluster.WebhookForwarder;
+import sky.pro.telegrambot2.listener.TelegramBotUpdatesListener;
+import sky.pro.telegrambot2.listener.WebhookUpdateQueue;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TelegramWebhookControllerTest {
+    private static final String SECRET = "secret";
+
+    @Mock
+    private TelegramBotUpdatesListener telegramBotUpdatesListener;
+    @Mock
+    private ClusterCoordinator clusterCoordinator;
+    @Mock
+    private WebhookForwarder webhookForwarder;
+
+    private WebhookUpdateQueue webhookUpdateQueue;
+    private TelegramWebhookController telegramWebhookController;
+    private String json;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        json = Files.readString(Paths.get("src/test/resources/webhook_update.json"));
+        webhookUpdateQueue = new WebhookUpdateQueue(telegramBotUpdatesListener, 10, 10);
+        webhookUpdateQueue.start();
+        telegramWebhookController = new TelegramWebhookController(webhookUpdateQueue, clusterCoordinator,
+                webhookForwarder, SECRET);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        webhookUpdateQueue.stop();
+    }
+
+    @Test
+    public void acceptedUpdateIsProcessed() {
+        when(clusterCoordinator.remoteOwnerUrl(123L)).thenReturn(Optional.empty());
+        when(telegramBotUpdatesListener.process(anyList())).thenReturn(UpdatesListener.CONFIRMED_UPDATES_ALL);
+
+        assertThat(telegramWebhookController.receiveUpdate(SECRET, false, json).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+
+        verify(telegramBotUpdatesListener, timeout(1000)).process(argThat(updates ->
+                updates.size() == 1 && updates.get(0).updateId() == 100));
+    }
+
+    @Test
+    public void wrongSecretTokenIsRejected() {
+        assertThat(telegramWebhookController.receiveUpdate("wrong", false, json).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(telegramWebhookController.receiveUpdate(null, false, json).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+
+        verify(telegramBotUpdatesListener, after(200).never()).process(anyList());
+    }
+
+    @Test
+    public void malformedBodyIsRejected() {
+        assertThat(telegramWebhookController.receiveUpdate(SECRET, false, "{").getStatusCode())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void updateOfRemotePartitionIsForwardedToOwner() {
+        when(clusterCoordinator.remoteOwnerUrl(123L)).thenReturn(Optional.of("http://node-2:8080"));
+        when(webhookForwarder.forwardAsync(eq("http://node-2:8080"), eq(TelegramWebhookController.SECRET_TOKEN_HEADER),
+                eq(SECRET), eq(json), any(Runnable.class))).thenReturn(true);
+
+        assertThat(telegramWebhookController.receiveUpdate(SECRET, false, json).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+
+        verify(telegramBotUpdatesListener, after(200).never()).process(anyList());
+    }
+
+    @Test
+    public void updateRejectedByOwnerIsProcessedLocally() {
+        when(clusterCoordinator.remoteOwnerUrl(123L)).thenReturn(Optional.of("http://node-2:8080"));
+        when(webhookForwarder.forwardAsync(anyString(), anyString(), anyString(), anyString(), any(Runnable.class)))
+                .thenAnswer(invocation -> {
+                    invocation.<Runnable>getArgument(4).run();
+                    return true;
+                });
+        when(telegramBotUpdatesListener.process(anyList())).thenReturn(UpdatesListener.CONFIRMED_UPDATES_ALL);
+
+        assertThat(telegramWebhookController.receiveUpdate(SECRET, false, json).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+
+        verify(telegramBotUpdatesListener, timeout(1000)).process(anyList());
+    }
+
+    @Test
+    public void fullForwardQueueAsksTelegramToRetry() {
+        when(clusterCoordinator.remoteOwnerUrl(123L)).thenReturn(Optional.of("http://node-2:8080"));
+        when(webhookForwarder.forwardAsync(anyString(), anyString(), anyString(), anyString(), any(Runnable.class)))
+                .thenReturn(false);
+
+        assertThat(telegramWebhookController.receiveUpdate(SECRET, false, json).getStatusCode())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void forwardedUpdateIsProcessedLocally() {
+        when(telegramBotUpdatesListener.process(anyList())).thenReturn(UpdatesListener.CONFIRMED_UPDATES_ALL);
+
+        assertThat(telegramWebhookController.receiveUpdate(SECRET, true, json).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+
+        verify(clusterCoordinator, never()).remoteOwnerUrl(anyLong());
+        verify(telegramBotUpdatesListener, timeout(1000)).process(anyList());
+    }
+
+    @Test
+    public void fullQueueAsksTelegramToRetry() {
+        when(clusterCoordinator.remoteOwnerUrl(123L)).thenReturn(Optional.empty());
+        WebhookUpdateQueue stoppedQueue = new WebhookUpdateQueue(telegramBotUpdatesListener, 1, 10);
+        TelegramWebhookController controller = new TelegramWebhookController(stoppedQueue, clusterCoordinator,
+                webhookForwarder, SECRET);
+
+        assertThat(controller.receiveUpdate(SECRET, false, json).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(controller.receiveUpdate(SECRET, false, json).getStatusCode())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void secretTokenIsRequired() {
+        assertThatThrownBy(() -> new TelegramWebhookController(webhookUpdateQueue,
+                clusterCoordinator, webhookForwarder, ""))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,63 @@
+package sky.pro.telegrambot2.handler;
+
+import com.pengrad.telegrambot.BotUtils;
+import com.pengrad.telegrambot.model.Update;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sky.pro.telegrambot2.keyboard.Button;
+import sky.pro.telegrambot2.keyboard.InlineKeyboard;
+import sky.pro.telegrambot2.sender.MessageSender;
+import sky.pro.telegrambot2.service.StaticMediaService;
+import sky.pro.telegrambot2.service.UserContextService;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+@ExtendWith(MockitoExtension.class)
+class CallBackQueryHandlerTest {
+    @Mock
+    private MessageSender messageSender;
+    @Mock
+    private UserContextService userContextService;
+    @Mock
+    private InlineKeyboard inlineKeyboard;
+    @Mock
+    private StaticMediaService staticMediaService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CallBackQueryHandler callBackQueryHandler;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        callBackQueryHandler = new CallBackQueryHandler(messageSender, userContextService, inlineKeyboard,
+                staticMediaService, meterRegistry);
+    }
+
+    @Test
+    public void knownCallbackIsRoutedAndTimed() throws Exception {
+        callBackQueryHandler.handle(callback(Button.button1));
+        Mockito.verify(inlineKeyboard).showDogShelterMenu(123L);
+        Mockito.verify(userContextService).chooseDogShelter(123L);
+        Assertions.assertThat(meterRegistry.get("bot.callback").tag("route", "dogShelterMenu").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void unknownCallbackIsCounted() throws Exception {
+        callBackQueryHandler.handle(callback("Кнопка 100"));
+        Mockito.verifyNoInteractions(inlineKeyboard, messageSender, userContextService, staticMediaService);
+        Assertions.assertThat(meterRegistry.get("bot.callback.unknown").counter().count()).isEqualTo(1);
+    }
+
+    private Update callback(String data) throws Exception {
+        String json = Files.readString(Paths.get("src/test/resources/callback_data.json"));
+        return BotUtils.fromJson(json.replace("%command%", data), Update.class);
+    }
+}
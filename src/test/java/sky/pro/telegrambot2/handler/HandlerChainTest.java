@@ -0,0 +1,46 @@
+package sky.pro.telegrambot2.handler;
+
+import com.pengrad.telegrambot.BotUtils;
+import com.pengrad.telegrambot.model.Update;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sky.pro.telegrambot2.enam.UpdateType;
+
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HandlerChainTest {
+    @Mock
+    private Handler callbackHandler;
+    @Mock
+    private Handler textHandler;
+
+    @Test
+    public void updateGoesOnlyToHandlersOfItsType() {
+        when(callbackHandler.getType()).thenReturn(UpdateType.CALLBACK_QUERY);
+        when(textHandler.getType()).thenReturn(UpdateType.TEXT);
+        HandlerChain handlerChain = new HandlerChain(List.of(callbackHandler, textHandler));
+        Update update = BotUtils.fromJson("{\"update_id\":1,\"message\":{\"text\":\"/start\"}}", Update.class);
+
+        handlerChain.handle(update);
+
+        Mockito.verify(textHandler).handle(update);
+        Mockito.verify(callbackHandler, Mockito.never()).handle(update);
+    }
+
+    @Test
+    public void updateWithoutHandlerIsSkipped() {
+        when(textHandler.getType()).thenReturn(UpdateType.TEXT);
+        HandlerChain handlerChain = new HandlerChain(List.of(textHandler));
+        Update update = BotUtils.fromJson("{\"update_id\":1,\"edited_message\":{\"text\":\"hi\"}}", Update.class);
+
+        handlerChain.handle(update);
+
+        Mockito.verify(textHandler, Mockito.never()).handle(update);
+    }
+}
@@ -1,33 +1,52 @@
 package sky.pro.telegrambot2.listener;
 
+import com.google.gson.Gson;
 import com.pengrad.telegrambot.BotUtils;
 import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.UpdatesListener;
 import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.model.request.InlineKeyboardButton;
 import com.pengrad.telegrambot.model.request.InlineKeyboardMarkup;
 import com.pengrad.telegrambot.request.SendMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import sky.pro.telegrambot2.cluster.ClusterCoordinator;
+import sky.pro.telegrambot2.enam.ExecutionMode;
+import sky.pro.telegrambot2.handler.CallBackQueryHandler;
+import sky.pro.telegrambot2.handler.HandlerChain;
+import sky.pro.telegrambot2.handler.ImageHandler;
+import sky.pro.telegrambot2.handler.TextHandler;
 import sky.pro.telegrambot2.keyboard.Button;
+import sky.pro.telegrambot2.keyboard.InlineKeyboard;
 import sky.pro.telegrambot2.model.CatOwner;
 import sky.pro.telegrambot2.model.DogOwner;
 import sky.pro.telegrambot2.model.UserContext;
+import sky.pro.telegrambot2.repository.UpdateWatermarkRepository;
 import sky.pro.telegrambot2.repository.UserContextRepository;
+import sky.pro.telegrambot2.sender.MessageSender;
 import sky.pro.telegrambot2.service.*;
+import sky.pro.telegrambot2.storage.IngestedPhoto;
+import sky.pro.telegrambot2.storage.PhotoIngestionService;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -48,9 +67,47 @@ class TelegramBotUpdatesListenerTest {
     DogShelterUserService dogShelterUserService;
     @Mock
     CatShelterUserService catShelterUserService;
-    @InjectMocks
+    @Mock
+    PhotoIngestionService photoIngestionService;
+    @Mock
+    StaticMediaService staticMediaService;
+    @Mock
+    DeadLetterService deadLetterService;
+    @Mock
+    ClusterCoordinator clusterCoordinator;
+    @Mock
+    UpdateWatermarkRepository updateWatermarkRepository;
+    UpdateDispatcher updateDispatcher;
+    MessageSender messageSender;
     TelegramBotUpdatesListener telegramBotUpdatesListener;
 
+    @BeforeEach
+    public void setUp() {
+        updateDispatcher = new UpdateDispatcher(ExecutionMode.PLATFORM, 1, 1);
+        messageSender = new MessageSender(telegramBot, 30, 1, 3, 100, 0);
+        messageSender.start();
+        UserContextService userContextService =
+                new UserContextService(userContextRepository, new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+        InlineKeyboard inlineKeyboard = new InlineKeyboard(messageSender);
+        HandlerChain handlerChain = new HandlerChain(List.of(
+                new CallBackQueryHandler(messageSender, userContextService, inlineKeyboard, staticMediaService,
+                        new SimpleMeterRegistry()),
+                new TextHandler(messageSender, dogShelterUserService, catShelterUserService, dogOwnerService,
+                        catOwnerService, dogOwnerReportService, catOwnerReportService, userContextService,
+                        inlineKeyboard),
+                new ImageHandler(photoIngestionService, messageSender, dogOwnerService, catOwnerService,
+                        dogOwnerReportService, catOwnerReportService)));
+        telegramBotUpdatesListener = new TelegramBotUpdatesListener(telegramBot, updateDispatcher, handlerChain,
+                deadLetterService, clusterCoordinator,
+                new UpdateDeduplicator(updateWatermarkRepository, new SimpleMeterRegistry(), 1024));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        messageSender.stop();
+        updateDispatcher.shutdown();
+    }
+
     @Test
     public void checkStartMenu() throws Exception {
         Path filePath = Paths.get("src/test/resources/text_update.json");
@@ -58,11 +115,12 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "/start");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
+        Assertions.assertThat(actual.getMethod()).isEqualTo("sendMessage");
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         InlineKeyboardButton[][] inlineKeyboardButtons =
-                ((InlineKeyboardMarkup) actual.getParameters().get("reply_markup")).inlineKeyboard();
+                replyMarkup(actual).inlineKeyboard();
         Assertions.assertThat(inlineKeyboardButtons.length).isEqualTo(1);
         Assertions.assertThat(inlineKeyboardButtons[0].length).isEqualTo(2);
         Assertions.assertThat(inlineKeyboardButtons[0][0].callbackData()).isEqualTo(Button.button1);
@@ -80,11 +138,11 @@ class TelegramBotUpdatesListenerTest {
         when(userContextRepository.findByChatId(123L)).thenReturn(userContext);
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         InlineKeyboardButton[][] inlineKeyboardButtons =
-                ((InlineKeyboardMarkup) actual.getParameters().get("reply_markup")).inlineKeyboard();
+                replyMarkup(actual).inlineKeyboard();
         Assertions.assertThat(inlineKeyboardButtons.length).isEqualTo(3);
         Assertions.assertThat(inlineKeyboardButtons[0].length).isEqualTo(2);
         Assertions.assertThat(inlineKeyboardButtons[0][0].callbackData()).isEqualTo(Button.button1_1);
@@ -105,11 +163,11 @@ class TelegramBotUpdatesListenerTest {
         when(userContextRepository.findByChatId(123L)).thenReturn(userContext);
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         InlineKeyboardButton[][] inlineKeyboardButtons =
-                ((InlineKeyboardMarkup) actual.getParameters().get("reply_markup")).inlineKeyboard();
+                replyMarkup(actual).inlineKeyboard();
         Assertions.assertThat(inlineKeyboardButtons.length).isEqualTo(3);
         Assertions.assertThat(inlineKeyboardButtons[0].length).isEqualTo(2);
         Assertions.assertThat(inlineKeyboardButtons[0][0].callbackData()).isEqualTo(Button.button2_1);
@@ -130,7 +188,7 @@ class TelegramBotUpdatesListenerTest {
         when(userContextRepository.findByChatId(123L)).thenReturn(userContext);
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         ArgumentCaptor<String> phoneArgumentCaptor = ArgumentCaptor.forClass(String.class);
         ArgumentCaptor<String> nameArgumentCaptor = ArgumentCaptor.forClass(String.class);
@@ -154,7 +212,7 @@ class TelegramBotUpdatesListenerTest {
         when(userContextRepository.findByChatId(123L)).thenReturn(userContext);
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         ArgumentCaptor<String> phoneArgumentCaptor = ArgumentCaptor.forClass(String.class);
         ArgumentCaptor<String> nameArgumentCaptor = ArgumentCaptor.forClass(String.class);
@@ -178,7 +236,7 @@ class TelegramBotUpdatesListenerTest {
         when(dogOwnerService.findDogOwnerByChatId(123L)).thenReturn(optDogOwner);
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         ArgumentCaptor<String> stringArgumentCaptor = ArgumentCaptor.forClass(String.class);
         ArgumentCaptor<DogOwner> dogOwnerArgumentCaptor = ArgumentCaptor.forClass(DogOwner.class);
@@ -202,7 +260,7 @@ class TelegramBotUpdatesListenerTest {
         when(catOwnerService.findCatOwnerByChatId(123L)).thenReturn(optCatOwner);
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         ArgumentCaptor<String> stringArgumentCaptor = ArgumentCaptor.forClass(String.class);
         ArgumentCaptor<CatOwner> catOwnerArgumentCaptor = ArgumentCaptor.forClass(CatOwner.class);
@@ -222,7 +280,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Привет");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text")).isEqualTo("Команда не распознана");
@@ -234,11 +292,11 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 1.1");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         InlineKeyboardButton[][] inlineKeyboardButtons =
-                ((InlineKeyboardMarkup) actual.getParameters().get("reply_markup")).inlineKeyboard();
+                replyMarkup(actual).inlineKeyboard();
         Assertions.assertThat(inlineKeyboardButtons.length).isEqualTo(3);
         Assertions.assertThat(inlineKeyboardButtons[0].length).isEqualTo(2);
         Assertions.assertThat(inlineKeyboardButtons[0][0].callbackData()).isEqualTo(Button.button3_1);
@@ -255,11 +313,11 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 2.1");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         InlineKeyboardButton[][] inlineKeyboardButtons =
-                ((InlineKeyboardMarkup) actual.getParameters().get("reply_markup")).inlineKeyboard();
+                replyMarkup(actual).inlineKeyboard();
         Assertions.assertThat(inlineKeyboardButtons.length).isEqualTo(3);
         Assertions.assertThat(inlineKeyboardButtons[0].length).isEqualTo(2);
         Assertions.assertThat(inlineKeyboardButtons[0][0].callbackData()).isEqualTo(Button.button7_1);
@@ -276,11 +334,11 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 1.2");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         InlineKeyboardButton[][] inlineKeyboardButtons =
-                ((InlineKeyboardMarkup) actual.getParameters().get("reply_markup")).inlineKeyboard();
+                replyMarkup(actual).inlineKeyboard();
         Assertions.assertThat(inlineKeyboardButtons.length).isEqualTo(6);
         Assertions.assertThat(inlineKeyboardButtons[0].length).isEqualTo(2);
         Assertions.assertThat(inlineKeyboardButtons[0][0].callbackData()).isEqualTo(Button.button4_1);
@@ -303,11 +361,11 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 2.2");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         InlineKeyboardButton[][] inlineKeyboardButtons =
-                ((InlineKeyboardMarkup) actual.getParameters().get("reply_markup")).inlineKeyboard();
+                replyMarkup(actual).inlineKeyboard();
         Assertions.assertThat(inlineKeyboardButtons.length).isEqualTo(5);
         Assertions.assertThat(inlineKeyboardButtons[0].length).isEqualTo(2);
         Assertions.assertThat(inlineKeyboardButtons[0][0].callbackData()).isEqualTo(Button.button6_1);
@@ -328,11 +386,11 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 2.3");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         InlineKeyboardButton[][] inlineKeyboardButtons =
-                ((InlineKeyboardMarkup) actual.getParameters().get("reply_markup")).inlineKeyboard();
+                replyMarkup(actual).inlineKeyboard();
         Assertions.assertThat(inlineKeyboardButtons.length).isEqualTo(2);
         Assertions.assertThat(inlineKeyboardButtons[0].length).isEqualTo(2);
         Assertions.assertThat(inlineKeyboardButtons[0][0].callbackData()).isEqualTo(Button.button5_1);
@@ -347,7 +405,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 3.1");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -367,7 +425,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 7.3");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -386,7 +444,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 3.4");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -400,7 +458,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 4.1");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -415,7 +473,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 6.1");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -432,7 +490,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 4.3");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -448,7 +506,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 4.2");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -462,7 +520,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 4.4");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -481,7 +539,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 6.4");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -500,7 +558,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 4.5");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -517,7 +575,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 6.5");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -541,7 +599,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 4.6");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -561,7 +619,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 4.7");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -580,7 +638,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 4.8");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -596,7 +654,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 4.9");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -612,7 +670,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 5.1");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -629,7 +687,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 5.2");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -643,11 +701,11 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 2");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         InlineKeyboardButton[][] inlineKeyboardButtons =
-                ((InlineKeyboardMarkup) actual.getParameters().get("reply_markup")).inlineKeyboard();
+                replyMarkup(actual).inlineKeyboard();
         Assertions.assertThat(inlineKeyboardButtons.length).isEqualTo(3);
         Assertions.assertThat(inlineKeyboardButtons[0].length).isEqualTo(2);
         Assertions.assertThat(inlineKeyboardButtons[0][0].callbackData()).isEqualTo(Button.button2_1);
@@ -663,11 +721,11 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 1");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(123L);
         InlineKeyboardButton[][] inlineKeyboardButtons =
-                ((InlineKeyboardMarkup) actual.getParameters().get("reply_markup")).inlineKeyboard();
+                replyMarkup(actual).inlineKeyboard();
         Assertions.assertThat(inlineKeyboardButtons.length).isEqualTo(3);
         Assertions.assertThat(inlineKeyboardButtons[0].length).isEqualTo(2);
         Assertions.assertThat(inlineKeyboardButtons[0][0].callbackData()).isEqualTo(Button.button1_1);
@@ -683,7 +741,7 @@ class TelegramBotUpdatesListenerTest {
         Update update = getUpdate(json, "Кнопка 1.4");
         telegramBotUpdatesListener.process(Collections.singletonList(update));
         ArgumentCaptor<SendMessage> argumentCaptor = ArgumentCaptor.forClass(SendMessage.class);
-        Mockito.verify(telegramBot).execute(argumentCaptor.capture());
+        Mockito.verify(telegramBot, Mockito.timeout(1000)).execute(argumentCaptor.capture(), Mockito.any());
         SendMessage actual = argumentCaptor.getValue();
         Assertions.assertThat(actual.getParameters().get("chat_id")).isEqualTo(512213990L);
         Assertions.assertThat(actual.getParameters().get("text"))
@@ -693,7 +751,76 @@ class TelegramBotUpdatesListenerTest {
 
 
 
+    @Test
+    public void photoIsDownloadedOnceForDogAndCatOwner() throws Exception {
+        Update update = BotUtils.fromJson("{\"update_id\": 1, \"message\": {" +
+                "\"chat\": {\"id\": 123}, \"from\": {\"id\": 123}," +
+                " \"photo\": [{\"file_id\": \"small\"}, {\"file_id\": \"large\"}]}}", Update.class);
+        Optional<DogOwner> optDogOwner = Optional.of(new DogOwner());
+        optDogOwner.get().setChatId(123L);
+        Optional<CatOwner> optCatOwner = Optional.of(new CatOwner());
+        optCatOwner.get().setChatId(123L);
+        when(dogOwnerService.findDogOwnerByChatId(123L)).thenReturn(optDogOwner);
+        when(catOwnerService.findCatOwnerByChatId(123L)).thenReturn(optCatOwner);
+        IngestedPhoto photo = new IngestedPhoto(Files.createTempFile("photo-", ".tmp"), "sha", 0, "image/jpeg");
+        when(photoIngestionService.ingest(any())).thenReturn(photo);
+        telegramBotUpdatesListener.process(Collections.singletonList(update));
+        Mockito.verify(photoIngestionService, Mockito.times(1))
+                .ingest(Mockito.argThat(photoSize -> "large".equals(photoSize.fileId())));
+        Mockito.verify(dogOwnerReportService).saveImageInNewReport(eq(photo), eq(optDogOwner.get()), any());
+        Mockito.verify(catOwnerReportService).saveImageInNewReport(eq(photo), eq(optCatOwner.get()), any());
+        Assertions.assertThat(photo.getFile()).doesNotExist();
+    }
+
+    @Test
+    public void failedUpdateIsDeadLetteredAndBatchConfirmed() {
+        Update failing = BotUtils.fromJson(
+                "{\"update_id\":100,\"message\":{\"from\":{\"id\":123},\"text\":\"/start\"}}", Update.class);
+        Update next = BotUtils.fromJson(
+                "{\"update_id\":101,\"message\":{\"from\":{\"id\":123},\"text\":\"/start\"}}", Update.class);
+        when(userContextRepository.findByChatId(123L)).thenThrow(new IllegalStateException("boom"));
+
+        int confirmed = telegramBotUpdatesListener.process(List.of(failing, next));
+
+        Assertions.assertThat(confirmed).isEqualTo(UpdatesListener.CONFIRMED_UPDATES_ALL);
+        Mockito.verify(deadLetterService).deadLetter(eq(failing), any(IllegalStateException.class));
+        Mockito.verify(deadLetterService).deadLetter(eq(next), any(IllegalStateException.class));
+    }
+
+    @Test
+    public void updateIsNotConfirmedWhenDeadLetterFails() {
+        Update failing = BotUtils.fromJson(
+                "{\"update_id\":100,\"message\":{\"from\":{\"id\":123},\"text\":\"/start\"}}", Update.class);
+        Update next = BotUtils.fromJson(
+                "{\"update_id\":101,\"message\":{\"from\":{\"id\":123},\"text\":\"/start\"}}", Update.class);
+        when(userContextRepository.findByChatId(123L)).thenThrow(new IllegalStateException("boom"));
+        Mockito.doThrow(new IllegalStateException("db is down")).when(deadLetterService).deadLetter(any(), any());
+
+        int confirmed = telegramBotUpdatesListener.process(List.of(failing, next));
+
+        Assertions.assertThat(confirmed).isEqualTo(99);
+        Mockito.verify(deadLetterService, Mockito.times(1)).deadLetter(any(), any());
+    }
+
+    @Test
+    public void redeliveredUpdateIsSkipped() {
+        Update first = BotUtils.fromJson(
+                "{\"update_id\":100,\"message\":{\"from\":{\"id\":123},\"text\":\"/start\"}}", Update.class);
+        Update second = BotUtils.fromJson(
+                "{\"update_id\":101,\"message\":{\"from\":{\"id\":123},\"text\":\"/start\"}}", Update.class);
+
+        telegramBotUpdatesListener.process(List.of(first));
+        telegramBotUpdatesListener.process(List.of(first, second));
+
+        Mockito.verify(telegramBot, Mockito.after(500).times(2)).execute(any(SendMessage.class), any());
+    }
+
     private Update getUpdate(String json, String replaced) {
         return BotUtils.fromJson(json.replace("%command%", replaced), Update.class);
     }
+
+    /* меню отправляются с уже сериализованной клавиатурой*/
+    private InlineKeyboardMarkup replyMarkup(SendMessage message) {
+        return new Gson().fromJson((String) message.getParameters().get("reply_markup"), InlineKeyboardMarkup.class);
+    }
 }
@@ -0,0 +1,77 @@
+package sky.pro.telegrambot2.listener;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sky.pro.telegrambot2.model.UpdateWatermark;
+import sky.pro.telegrambot2.repository.UpdateWatermarkRepository;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UpdateDeduplicatorTest {
+    @Mock
+    private UpdateWatermarkRepository updateWatermarkRepository;
+
+    @Test
+    public void markedUpdateIsProcessed() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(updateWatermarkRepository,
+                new SimpleMeterRegistry(), 64);
+
+        assertThat(deduplicator.isProcessed(10)).isFalse();
+        deduplicator.markProcessed(10);
+        assertThat(deduplicator.isProcessed(10)).isTrue();
+        assertThat(deduplicator.isProcessed(9)).isFalse();
+        assertThat(deduplicator.isProcessed(11)).isFalse();
+        assertThat(deduplicator.isProcessed(null)).isFalse();
+    }
+
+    @Test
+    public void slidingWindowForgetsOldIds() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(updateWatermarkRepository,
+                new SimpleMeterRegistry(), 64);
+
+        deduplicator.markProcessed(10);
+        deduplicator.markProcessed(74);
+
+        assertThat(deduplicator.isProcessed(74)).isTrue();
+        assertThat(deduplicator.isProcessed(10)).isFalse();
+    }
+
+    @Test
+    public void lowWaterMarkSurvivesRestart() {
+        UpdateWatermark watermark = new UpdateWatermark();
+        watermark.setName(UpdateDeduplicator.POLLING_WATERMARK);
+        watermark.setUpdateId(500L);
+        when(updateWatermarkRepository.findById(UpdateDeduplicator.POLLING_WATERMARK))
+                .thenReturn(Optional.of(watermark));
+
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(updateWatermarkRepository,
+                new SimpleMeterRegistry(), 64);
+
+        assertThat(deduplicator.isProcessed(1)).isTrue();
+        assertThat(deduplicator.isProcessed(500)).isTrue();
+        assertThat(deduplicator.isProcessed(501)).isFalse();
+    }
+
+    @Test
+    public void lowWaterMarkIsPersistedOnlyWhenItMoves() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(updateWatermarkRepository,
+                new SimpleMeterRegistry(), 64);
+
+        deduplicator.advanceLowWaterMark(100);
+        deduplicator.advanceLowWaterMark(100);
+        deduplicator.advanceLowWaterMark(90);
+
+        verify(updateWatermarkRepository, times(1)).advance(anyString(), anyLong());
+        verify(updateWatermarkRepository).advance(UpdateDeduplicator.POLLING_WATERMARK, 100);
+        assertThat(deduplicator.isProcessed(95)).isTrue();
+    }
+}
@@ -0,0 +1,84 @@
+package sky.pro.telegrambot2.listener;
+
+import com.pengrad.telegrambot.BotUtils;
+import com.pengrad.telegrambot.model.Update;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import sky.pro.telegrambot2.enam.ExecutionMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/* сравнение пропускной способности диспетчера на пуле платформенных потоков и на виртуальных потоках.
+ * Обработчик имитирует поход в Telegram API (40 мс) и запрос в базу через пул из 10 соединений (5 мс).
+ * Запуск: mvn test -Pbenchmark*/
+@Tag("benchmark")
+class UpdateDispatcherBenchmarkTest {
+    private static final int CHATS = 500;
+    private static final int UPDATES_PER_CHAT = 4;
+    private static final int JDBC_POOL_SIZE = 10;
+
+    private final Semaphore jdbcPool = new Semaphore(JDBC_POOL_SIZE);
+
+    @Test
+    public void compareExecutionModes() throws Exception {
+        List<Update> batch = createBatch();
+        int workers = Runtime.getRuntime().availableProcessors();
+
+        long platformMillis = measure(new UpdateDispatcher(ExecutionMode.PLATFORM, workers, workers), batch);
+        long virtualMillis = measure(new UpdateDispatcher(ExecutionMode.VIRTUAL, workers, 256), batch);
+
+        Assertions.assertThat(virtualMillis)
+                .as("%d updates: PLATFORM (%d workers) %d ms, VIRTUAL %d ms",
+                        batch.size(), workers, platformMillis, virtualMillis)
+                .isLessThan(platformMillis);
+    }
+
+    private long measure(UpdateDispatcher dispatcher, List<Update> batch) throws InterruptedException {
+        AtomicInteger handled = new AtomicInteger();
+        Consumer<Update> handler = update -> {
+            sleep(40);
+            jdbcPool.acquireUninterruptibly();
+            try {
+                sleep(5);
+            } finally {
+                jdbcPool.release();
+            }
+            handled.incrementAndGet();
+        };
+        dispatcher.dispatch(batch.subList(0, CHATS), handler);
+        handled.set(0);
+
+        long start = System.nanoTime();
+        dispatcher.dispatch(batch, handler);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        dispatcher.shutdown();
+        Assertions.assertThat(handled.get()).isEqualTo(batch.size());
+        return elapsed;
+    }
+
+    private List<Update> createBatch() {
+        List<Update> batch = new ArrayList<>(CHATS * UPDATES_PER_CHAT);
+        int updateId = 0;
+        for (int i = 0; i < UPDATES_PER_CHAT; i++) {
+            for (int chatId = 1; chatId <= CHATS; chatId++) {
+                batch.add(BotUtils.fromJson("{\"update_id\": " + (++updateId) + ", \"message\": {" +
+                        "\"chat\": {\"id\": " + chatId + "}, \"from\": {\"id\": " + chatId + "}," +
+                        " \"text\": \"/start\"}}", Update.class));
+            }
+        }
+        return batch;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package sky.pro.telegrambot2.listener;
+
+import com.pengrad.telegrambot.BotUtils;
+import com.pengrad.telegrambot.model.Update;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import sky.pro.telegrambot2.enam.ExecutionMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class UpdateDispatcherTest {
+    private UpdateDispatcher dispatcher;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionMode.class)
+    public void updatesOfOneChatAreHandledInOrder(ExecutionMode mode) {
+        dispatcher = new UpdateDispatcher(mode, 4, 4);
+        List<Update> batch = createBatch(20, 10);
+        Map<Long, List<Integer>> handled = new ConcurrentHashMap<>();
+
+        OptionalInt failed = dispatcher.dispatch(batch, update -> {
+            sleep(1);
+            handled.computeIfAbsent(UpdateDispatcher.chatIdOf(update), chatId -> new CopyOnWriteArrayList<>())
+                    .add(update.updateId());
+        });
+
+        Assertions.assertThat(failed).isEmpty();
+        Assertions.assertThat(handled).hasSize(20);
+        handled.values().forEach(updateIds -> Assertions.assertThat(updateIds).hasSize(10).isSorted());
+    }
+
+    @Test
+    public void virtualModeHandlesAtMostMaxConcurrencyChatsAtOnce() {
+        dispatcher = new UpdateDispatcher(ExecutionMode.VIRTUAL, 1, 3);
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger max = new AtomicInteger();
+
+        OptionalInt failed = dispatcher.dispatch(createBatch(50, 2), update -> {
+            max.accumulateAndGet(current.incrementAndGet(), Math::max);
+            sleep(5);
+            current.decrementAndGet();
+        });
+
+        Assertions.assertThat(failed).isEmpty();
+        Assertions.assertThat(max.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void failedUpdateStopsItsChatOnly() {
+        dispatcher = new UpdateDispatcher(ExecutionMode.VIRTUAL, 1, 4);
+        List<Update> batch = createBatch(2, 3);
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+
+        OptionalInt failed = dispatcher.dispatch(batch, update -> {
+            if (update.updateId() == 3) {
+                throw new IllegalStateException("boom");
+            }
+            handled.add(update.updateId());
+        });
+
+        Assertions.assertThat(failed).hasValue(3);
+        Assertions.assertThat(handled).containsExactlyInAnyOrder(1, 2, 4, 6);
+    }
+
+    /* апдейты чатов перемешаны: update_id растет по кругу chat 1, chat 2, ..., chat 1, ...*/
+    private static List<Update> createBatch(int chats, int updatesPerChat) {
+        List<Update> batch = new ArrayList<>(chats * updatesPerChat);
+        int updateId = 0;
+        for (int i = 0; i < updatesPerChat; i++) {
+            for (int chatId = 1; chatId <= chats; chatId++) {
+                batch.add(BotUtils.fromJson("{\"update_id\": " + (++updateId) + ", \"message\": {" +
+                        "\"chat\": {\"id\": " + chatId + "}, \"from\": {\"id\": " + chatId + "}," +
+                        " \"text\": \"/start\"}}", Update.class));
+            }
+        }
+        return batch;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package sky.pro.telegrambot2.listener;
+
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.request.DeleteWebhook;
+import com.pengrad.telegrambot.response.BaseResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WebhookRegistrationTest {
+    private static final String URL = "https://bot.example.com/telegram/webhook";
+
+    @Mock
+    private TelegramBot telegramBot;
+    @Mock
+    private BaseResponse response;
+
+    @Test
+    public void webhookModeRegistersUrlAndSecretToken() {
+        when(response.isOk()).thenReturn(true);
+        when(telegramBot.execute(any(SetWebhookRequest.class))).thenReturn(response);
+
+        new WebhookRegistration(telegramBot, "WEBHOOK", URL, "secret").register();
+
+        ArgumentCaptor<SetWebhookRequest> captor = ArgumentCaptor.forClass(SetWebhookRequest.class);
+        verify(telegramBot).execute(captor.capture());
+        BaseRequest<?, ?> request = captor.getValue();
+        assertThat(request.getMethod()).isEqualTo("setWebhook");
+        assertThat(request.getParameters())
+                .containsEntry("url", URL)
+                .containsEntry("secret_token", "secret");
+    }
+
+    @Test
+    public void webhookModeFailsStartupWhenTelegramRejectsWebhook() {
+        when(response.isOk()).thenReturn(false);
+        when(telegramBot.execute(any(SetWebhookRequest.class))).thenReturn(response);
+
+        WebhookRegistration webhookRegistration = new WebhookRegistration(telegramBot, "WEBHOOK", URL, "secret");
+
+        assertThatThrownBy(webhookRegistration::register).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void webhookModeRequiresUrl() {
+        WebhookRegistration webhookRegistration = new WebhookRegistration(telegramBot, "WEBHOOK", "", "secret");
+
+        assertThatThrownBy(webhookRegistration::register).isInstanceOf(IllegalStateException.class);
+        verifyNoInteractions(telegramBot);
+    }
+
+    @Test
+    public void pollingModeDeletesWebhook() {
+        when(response.isOk()).thenReturn(true);
+        when(telegramBot.execute(any(DeleteWebhook.class))).thenReturn(response);
+
+        new WebhookRegistration(telegramBot, "POLLING", "", "").register();
+
+        verify(telegramBot).execute(any(DeleteWebhook.class));
+        verify(telegramBot, never()).execute(any(SetWebhookRequest.class));
+    }
+}
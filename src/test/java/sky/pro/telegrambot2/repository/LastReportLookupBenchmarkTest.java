@@ -0,0 +1,128 @@
+package sky.pro.telegrambot2.repository;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/* поиск последнего отчета овнера не должен дорожать по мере роста таблицы отчетов до миллионов строк.
+ * Тест выполняет тот же запрос, что и DogOwnerReportRepository, в отдельной схеме базы PostgreSQL, и на
+ * каждом размере таблицы проверяет план: индексный поиск без сортировки, читающий одни и те же
+ * несколько страниц, сколько бы строк ни было в таблице.
+ * Запуск: mvn test -Pbenchmark -Dbenchmark.jdbc.url=jdbc:postgresql://localhost:5432/db
+ * -Dbenchmark.jdbc.username=... -Dbenchmark.jdbc.password=...*/
+@Tag("benchmark")
+class LastReportLookupBenchmarkTest {
+    private static final String SCHEMA = "last_report_benchmark";
+    private static final int OWNERS = 10_000;
+    private static final int[] TABLE_SIZES = {10_000, 100_000, 1_000_000, 3_000_000};
+    private static final int LOOKUPS = 2_000;
+    /* корень, промежуточный уровень и лист индекса плюс страница таблицы, с запасом на рост дерева*/
+    private static final int MAX_PAGES_PER_LOOKUP = 8;
+    private static final Pattern BUFFERS = Pattern.compile("Buffers: shared(?: hit=(\\d+))?(?: read=(\\d+))?");
+
+    @Test
+    public void lookupCostDoesNotGrowWithTable() throws Exception {
+        String url = System.getProperty("benchmark.jdbc.url");
+        Assumptions.assumeTrue(url != null, "benchmark.jdbc.url is not set");
+        String query = DogOwnerReportRepository.class
+                .getMethod("findLastReportByOwnerId", Integer.class)
+                .getAnnotation(Query.class).value()
+                .replace(":ownerId", "?");
+
+        try (Connection connection = DriverManager.getConnection(url,
+                System.getProperty("benchmark.jdbc.username"), System.getProperty("benchmark.jdbc.password"))) {
+            createSchema(connection);
+            try {
+                int rows = 0;
+                for (int size : TABLE_SIZES) {
+                    insertReports(connection, rows, size);
+                    rows = size;
+                    try (PreparedStatement statement = connection.prepareStatement(query)) {
+                        lookup(statement, LOOKUPS);
+                    }
+                    String plan = explain(connection, query);
+                    Assertions.assertThat(plan)
+                            .as("plan at %d reports", rows)
+                            .contains("Index Scan using dog_owner_reports_owner_last_report_idx")
+                            .doesNotContain("Sort")
+                            .doesNotContain("Seq Scan");
+                    Assertions.assertThat(pagesRead(plan))
+                            .as("pages read at %d reports", rows)
+                            .isLessThanOrEqualTo(MAX_PAGES_PER_LOOKUP);
+                }
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("DROP SCHEMA " + SCHEMA + " CASCADE");
+                }
+            }
+        }
+    }
+
+    private void createSchema(Connection connection) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            statement.execute("CREATE SCHEMA " + SCHEMA);
+            statement.execute("SET search_path TO " + SCHEMA);
+            statement.execute("CREATE TABLE dog_owner_reports (id SERIAL NOT NULL PRIMARY KEY, photo_report BYTEA," +
+                    " string_report TEXT, last_report timestamp, dog_owner_id INTEGER, photo_key TEXT," +
+                    " photo_size BIGINT, photo_mime TEXT)");
+            statement.execute("CREATE INDEX dog_owner_reports_owner_last_report_idx" +
+                    " ON dog_owner_reports (dog_owner_id, last_report DESC, id DESC)");
+        }
+    }
+
+    private void insertReports(Connection connection, int from, int to) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO dog_owner_reports (string_report, last_report, dog_owner_id, photo_key)" +
+                    " SELECT 'report ' || i, now() - (i || ' minutes')::interval, i % " + OWNERS + "," +
+                    " md5(i::text) FROM generate_series(" + (from + 1) + ", " + to + ") AS i");
+            statement.execute("ANALYZE dog_owner_reports");
+        }
+    }
+
+    private void lookup(PreparedStatement statement, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            statement.setInt(1, ThreadLocalRandom.current().nextInt(OWNERS));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Assertions.assertThat(resultSet.next()).isTrue();
+            }
+        }
+    }
+
+    private String explain(Connection connection, String query) throws Exception {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN (ANALYZE, BUFFERS) " + query)) {
+            statement.setInt(1, 1);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+
+    /* страницы, прочитанные верхним узлом плана, то есть всем запросом*/
+    private int pagesRead(String plan) {
+        Matcher matcher = BUFFERS.matcher(plan);
+        Assertions.assertThat(matcher.find()).as("buffers in plan %s", plan).isTrue();
+        int pages = 0;
+        for (int group = 1; group <= 2; group++) {
+            if (matcher.group(group) != null) {
+                pages += Integer.parseInt(matcher.group(group));
+            }
+        }
+        return pages;
+    }
+}
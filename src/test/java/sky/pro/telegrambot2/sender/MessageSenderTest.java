@@ -0,0 +1,131 @@
+package sky.pro.telegrambot2.sender;
+
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.ResponseParameters;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.BaseResponse;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageSenderTest {
+    @Mock
+    private TelegramBot telegramBot;
+    @Mock
+    private SendResponse ok;
+    @Mock
+    private SendResponse tooManyRequests;
+    @Mock
+    private ResponseParameters responseParameters;
+
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private MessageSender messageSender;
+
+    @AfterEach
+    public void tearDown() {
+        messageSender.stop();
+    }
+
+    @Test
+    public void messagesOfOneChatAreSentInOrder() throws Exception {
+        when(ok.isOk()).thenReturn(true);
+        answerWith(ok);
+        startSender(1);
+
+        List<CompletableFuture<SendResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(messageSender.send(new SendMessage(i % 2 == 0 ? 1L : 2L, "message " + i)));
+        }
+        for (CompletableFuture<SendResponse> future : futures) {
+            assertThat(future.get(5, TimeUnit.SECONDS)).isSameAs(ok);
+        }
+
+        assertThat(sentTo("1")).containsExactly(expectedTexts(0));
+        assertThat(sentTo("2")).containsExactly(expectedTexts(1));
+    }
+
+    @Test
+    public void requestRejectedWith429IsRetriedBeforeLaterMessagesOfTheChat() throws Exception {
+        when(ok.isOk()).thenReturn(true);
+        stubTooManyRequests();
+        answerWith(tooManyRequests, ok, ok);
+        startSender(1);
+
+        CompletableFuture<SendResponse> first = messageSender.send(new SendMessage(1L, "first"));
+        CompletableFuture<SendResponse> second = messageSender.send(new SendMessage(1L, "second"));
+
+        assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(ok);
+        assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(ok);
+        assertThat(sent).containsExactly("1:first", "1:first", "1:second");
+    }
+
+    @Test
+    public void requestIsDroppedAfterMaxRetries() throws Exception {
+        stubTooManyRequests();
+        answerWith(tooManyRequests);
+        startSender(1);
+
+        CompletableFuture<SendResponse> future = messageSender.send(new SendMessage(1L, "first"));
+
+        assertThat(future.get(5, TimeUnit.SECONDS)).isSameAs(tooManyRequests);
+        assertThat(sent).containsExactly("1:first", "1:first");
+    }
+
+    private void startSender(int maxRetries) {
+        messageSender = new MessageSender(telegramBot, 1000, 1000, 1, 100, maxRetries);
+        messageSender.start();
+    }
+
+    private void stubTooManyRequests() {
+        when(tooManyRequests.isOk()).thenReturn(false);
+        when(tooManyRequests.errorCode()).thenReturn(429);
+        when(tooManyRequests.parameters()).thenReturn(responseParameters);
+        when(responseParameters.retryAfter()).thenReturn(1);
+    }
+
+    /* Telegram отвечает на запросы по очереди заданными ответами, последний повторяется*/
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void answerWith(BaseResponse... responses) {
+        doAnswer(invocation -> {
+            BaseRequest<?, ?> request = invocation.getArgument(0);
+            int index = Math.min(sent.size(), responses.length - 1);
+            sent.add(request.getParameters().get("chat_id") + ":" + request.getParameters().get("text"));
+            ((Callback) invocation.getArgument(1)).onResponse(request, responses[index]);
+            return null;
+        }).when(telegramBot).execute(any(BaseRequest.class), any(Callback.class));
+    }
+
+    private List<String> sentTo(String chatId) {
+        synchronized (sent) {
+            return sent.stream()
+                    .filter(message -> message.startsWith(chatId + ":"))
+                    .map(message -> message.substring(chatId.length() + 1))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private String[] expectedTexts(int offset) {
+        List<String> texts = new ArrayList<>();
+        for (int i = offset; i < 20; i += 2) {
+            texts.add("message " + i);
+        }
+        return texts.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,99 @@
+package sky.pro.telegrambot2.sender;
+
+import com.pengrad.telegrambot.model.ResponseParameters;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import sky.pro.telegrambot2.enam.OutboxStatus;
+import sky.pro.telegrambot2.model.OutboxMessage;
+import sky.pro.telegrambot2.repository.OutboxMessageRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxServiceTest {
+    @Mock
+    private OutboxMessageRepository outboxMessageRepository;
+    @Mock
+    private MessageSender messageSender;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private SendResponse response;
+
+    private OutboxService outboxService;
+    private OutboxMessage message;
+
+    @BeforeEach
+    public void setUp() {
+        outboxService = new OutboxService(outboxMessageRepository, messageSender, transactionTemplate,
+                100, 10, Duration.ofMinutes(1));
+        message = new OutboxMessage();
+        message.setId(1L);
+        message.setChatId(123L);
+        message.setText("Добрый день, поздравляем ваш испытательный срок окончен");
+        message.setStatus(OutboxStatus.PENDING);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(outboxMessageRepository.lockDueMessages(any(LocalDateTime.class), anyInt())).thenReturn(List.of(message));
+        Mockito.lenient().when(messageSender.sendWithoutRetry(any(SendMessage.class)))
+                .thenReturn(CompletableFuture.completedFuture(response));
+    }
+
+    @Test
+    public void markSentWhenTelegramAccepted() {
+        when(response.isOk()).thenReturn(true);
+        outboxService.drain();
+        Mockito.verify(outboxMessageRepository).complete(eq(1L), eq(OutboxStatus.SENT), any(LocalDateTime.class));
+    }
+
+    @Test
+    public void rescheduleAfterRetryAfterOnTooManyRequests() {
+        ResponseParameters parameters = Mockito.mock(ResponseParameters.class);
+        when(parameters.retryAfter()).thenReturn(42);
+        when(response.isOk()).thenReturn(false);
+        when(response.errorCode()).thenReturn(429);
+        when(response.parameters()).thenReturn(parameters);
+        LocalDateTime before = LocalDateTime.now();
+        outboxService.drain();
+        ArgumentCaptor<LocalDateTime> nextAttempt = ArgumentCaptor.forClass(LocalDateTime.class);
+        Mockito.verify(outboxMessageRepository).reschedule(eq(1L), nextAttempt.capture());
+        Assertions.assertThat(nextAttempt.getValue()).isAfterOrEqualTo(before.plusSeconds(42));
+    }
+
+    @Test
+    public void slowSendIsNotClaimedAgain() {
+        when(messageSender.sendWithoutRetry(any(SendMessage.class))).thenReturn(new CompletableFuture<>());
+        outboxService.drain();
+        outboxService.drain();
+        Mockito.verify(messageSender, Mockito.times(1)).sendWithoutRetry(any(SendMessage.class));
+        Mockito.verify(outboxMessageRepository).renewLease(eq(List.of(1L)), any(LocalDateTime.class));
+        Mockito.verify(outboxMessageRepository).lockDueMessages(any(LocalDateTime.class), eq(99));
+    }
+
+    @Test
+    public void failWithoutRetryWhenBotIsBlocked() {
+        when(response.isOk()).thenReturn(false);
+        when(response.errorCode()).thenReturn(403);
+        outboxService.drain();
+        Mockito.verify(outboxMessageRepository).complete(1L, OutboxStatus.FAILED, null);
+        Mockito.verify(outboxMessageRepository, Mockito.never()).reschedule(any(), any());
+    }
+}
@@ -0,0 +1,59 @@
+package sky.pro.telegrambot2.sender;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+    private static final long TOKEN = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void burstIsSentImmediatelyThenSpacedByRate() {
+        TokenBucket tokenBucket = new TokenBucket(10, 3);
+
+        assertThat(tokenBucket.reserve(0)).isEqualTo(0);
+        assertThat(tokenBucket.reserve(0)).isEqualTo(0);
+        assertThat(tokenBucket.reserve(0)).isEqualTo(0);
+        assertThat(tokenBucket.reserve(0)).isEqualTo(TOKEN);
+        assertThat(tokenBucket.reserve(0)).isEqualTo(2 * TOKEN);
+    }
+
+    @Test
+    public void tokensRefillOverTime() {
+        TokenBucket tokenBucket = new TokenBucket(10, 3);
+        for (int i = 0; i < 3; i++) {
+            tokenBucket.reserve(0);
+        }
+
+        long now = TOKEN * 5 / 2;
+        assertThat(tokenBucket.reserve(now)).isEqualTo(now);
+        assertThat(tokenBucket.reserve(now)).isEqualTo(now);
+        assertThat(tokenBucket.reserve(now)).isEqualTo(3 * TOKEN);
+    }
+
+    @Test
+    public void fullBurstIsRestoredAfterIdle() {
+        TokenBucket tokenBucket = new TokenBucket(10, 3);
+        for (int i = 0; i < 5; i++) {
+            tokenBucket.reserve(0);
+        }
+        long now = TimeUnit.SECONDS.toNanos(1);
+        assertThat(tokenBucket.isIdle(now)).isTrue();
+
+        assertThat(tokenBucket.reserve(now)).isEqualTo(now);
+        assertThat(tokenBucket.reserve(now)).isEqualTo(now);
+        assertThat(tokenBucket.reserve(now)).isEqualTo(now);
+        assertThat(tokenBucket.reserve(now)).isEqualTo(now + TOKEN);
+    }
+
+    @Test
+    public void bucketIsNotIdleWhileTokensAreMissing() {
+        TokenBucket tokenBucket = new TokenBucket(10, 3);
+        tokenBucket.reserve(0);
+
+        assertThat(tokenBucket.isIdle(TOKEN / 2)).isFalse();
+        assertThat(tokenBucket.isIdle(TOKEN)).isTrue();
+    }
+}
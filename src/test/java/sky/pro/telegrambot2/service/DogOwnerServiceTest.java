@@ -0,0 +1,95 @@
+package sky.pro.telegrambot2.service;
+
+import org.assertj.core.api.Assertions;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import sky.pro.telegrambot2.enam.ProbationaryStatus;
+import sky.pro.telegrambot2.event.ProbationaryStatusChangedEvent;
+import sky.pro.telegrambot2.exception.AlreadyExistException;
+import sky.pro.telegrambot2.model.DogOwner;
+import sky.pro.telegrambot2.repository.DogOwnerRepository;
+
+import java.sql.SQLException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DogOwnerServiceTest {
+    @Mock
+    private DogOwnerRepository dogOwnerRepository;
+    @Mock
+    private OwnerRegistry ownerRegistry;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private DogOwnerService dogOwnerService;
+
+    @BeforeEach
+    public void setUp() {
+        dogOwnerService = new DogOwnerService(dogOwnerRepository, ownerRegistry, eventPublisher);
+    }
+
+    @Test
+    public void newOwnerIsSavedWithoutReadingAllOwners() {
+        when(dogOwnerRepository.saveAndFlush(any(DogOwner.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        DogOwner saved = dogOwnerService.saveOwnerByNameAndChatId("Ivan", 123L);
+        Assertions.assertThat(saved.getName()).isEqualTo("Ivan");
+        Assertions.assertThat(saved.getChatId()).isEqualTo(123L);
+        Mockito.verify(dogOwnerRepository, Mockito.never()).findAll();
+        Mockito.verify(ownerRegistry).invalidate(123L);
+    }
+
+    @Test
+    public void uniqueIndexViolationMeansOwnerAlreadyExists() {
+        when(dogOwnerRepository.saveAndFlush(any(DogOwner.class)))
+                .thenThrow(violationOf("dog_owners_chat_id_name_key"));
+        Assertions.assertThatThrownBy(() -> dogOwnerService.saveOwnerByNameAndChatId("Ivan", 123L))
+                .isInstanceOf(AlreadyExistException.class);
+        Mockito.verify(ownerRegistry, Mockito.never()).invalidate(123L);
+    }
+
+    @Test
+    public void otherConstraintViolationIsRethrown() {
+        DataIntegrityViolationException violation = violationOf("dog_owners_name_not_null");
+        when(dogOwnerRepository.saveAndFlush(any(DogOwner.class))).thenThrow(violation);
+        Assertions.assertThatThrownBy(() -> dogOwnerService.saveOwnerByNameAndChatId("Ivan", 123L))
+                .isSameAs(violation);
+        Mockito.verify(ownerRegistry, Mockito.never()).invalidate(123L);
+    }
+
+    @Test
+    public void statusChangePublishesEvent() {
+        DogOwner owner = new DogOwner();
+        owner.setId(1);
+        owner.setChatId(123L);
+        owner.setProbationaryStatus(ProbationaryStatus.ACTIVE);
+        DogOwner notified = new DogOwner();
+        notified.setProbationaryStatus(ProbationaryStatus.FINALLY_PASSED);
+        when(dogOwnerRepository.findOwnerById(1)).thenReturn(owner, owner, notified);
+
+        DogOwner changed = dogOwnerService.changeProbationaryStatus(1, ProbationaryStatus.PASSED);
+
+        ArgumentCaptor<ProbationaryStatusChangedEvent> captor =
+                ArgumentCaptor.forClass(ProbationaryStatusChangedEvent.class);
+        Mockito.verify(eventPublisher).publishEvent(captor.capture());
+        Assertions.assertThat(captor.getValue().getOwnerId()).isEqualTo(1);
+        Assertions.assertThat(captor.getValue().getChatId()).isEqualTo(123L);
+        Assertions.assertThat(captor.getValue().getStatus()).isEqualTo(ProbationaryStatus.PASSED);
+        Mockito.verify(dogOwnerRepository).saveAndFlush(owner);
+        Assertions.assertThat(changed.getProbationaryStatus()).isEqualTo(ProbationaryStatus.FINALLY_PASSED);
+    }
+
+    private static DataIntegrityViolationException violationOf(String constraintName) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement", new SQLException(), constraintName));
+    }
+}
@@ -0,0 +1,63 @@
+package sky.pro.telegrambot2.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sky.pro.telegrambot2.model.DogOwner;
+import sky.pro.telegrambot2.repository.CatOwnerRepository;
+import sky.pro.telegrambot2.repository.DogOwnerRepository;
+
+import java.time.Duration;
+
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OwnerRegistryTest {
+    @Mock
+    private DogOwnerRepository dogOwnerRepository;
+    @Mock
+    private CatOwnerRepository catOwnerRepository;
+
+    private OwnerRegistry ownerRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        ownerRegistry = new OwnerRegistry(dogOwnerRepository, catOwnerRepository, new SimpleMeterRegistry(),
+                100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    public void bothOwnersAreLoadedWithOneLookup() {
+        DogOwner dogOwner = new DogOwner();
+        dogOwner.setChatId(123L);
+        when(dogOwnerRepository.getOwnerByChatId(123L)).thenReturn(dogOwner);
+        Assertions.assertThat(ownerRegistry.findDogOwner(123L)).contains(dogOwner);
+        Assertions.assertThat(ownerRegistry.findCatOwner(123L)).isEmpty();
+        Assertions.assertThat(ownerRegistry.findDogOwner(123L)).contains(dogOwner);
+        Mockito.verify(dogOwnerRepository, Mockito.times(1)).getOwnerByChatId(123L);
+        Mockito.verify(catOwnerRepository, Mockito.times(1)).getOwnerByChatId(123L);
+    }
+
+    @Test
+    public void notAnOwnerIsCached() {
+        Assertions.assertThat(ownerRegistry.findDogOwner(123L)).isEmpty();
+        Assertions.assertThat(ownerRegistry.findCatOwner(123L)).isEmpty();
+        Assertions.assertThat(ownerRegistry.findDogOwner(123L)).isEmpty();
+        Mockito.verify(dogOwnerRepository, Mockito.times(1)).getOwnerByChatId(123L);
+    }
+
+    @Test
+    public void invalidateReloadsOwner() {
+        Assertions.assertThat(ownerRegistry.findDogOwner(123L)).isEmpty();
+        DogOwner dogOwner = new DogOwner();
+        dogOwner.setChatId(123L);
+        when(dogOwnerRepository.getOwnerByChatId(123L)).thenReturn(dogOwner);
+        ownerRegistry.invalidate(123L);
+        Assertions.assertThat(ownerRegistry.findDogOwner(123L)).contains(dogOwner);
+    }
+}
@@ -0,0 +1,114 @@
+package sky.pro.telegrambot2.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+import sky.pro.telegrambot2.enam.ProbationaryStatus;
+import sky.pro.telegrambot2.enam.ShelterType;
+import sky.pro.telegrambot2.event.ProbationaryStatusChangedEvent;
+import sky.pro.telegrambot2.model.StatusTransition;
+import sky.pro.telegrambot2.sender.OutboxService;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ProbationNotificationServiceTest {
+    @Mock
+    private DogOwnerService dogOwnerService;
+    @Mock
+    private CatOwnerService catOwnerService;
+    @Mock
+    private OutboxService outboxService;
+    @Mock
+    private TaskScheduler taskScheduler;
+    @Mock
+    private OwnerRegistry ownerRegistry;
+    @InjectMocks
+    private ProbationNotificationService probationNotificationService;
+
+    @Test
+    public void ownerIsNotifiedWhenStatusChanges() {
+        when(dogOwnerService.changeStatusIfCurrent(1, 10L, ProbationaryStatus.PASSED,
+                ProbationaryStatus.FINALLY_PASSED)).thenReturn(true);
+
+        probationNotificationService.onStatusChanged(new ProbationaryStatusChangedEvent(ShelterType.DOG, 1, 10L,
+                ProbationaryStatus.PASSED, 0));
+
+        Mockito.verify(outboxService).enqueue(10L, "Добрый день, поздравляем ваш испытательный срок окончен");
+    }
+
+    @Test
+    public void ownerIsNotNotifiedTwice() {
+        when(catOwnerService.changeStatusIfCurrent(2, 20L, ProbationaryStatus.EXTENDED,
+                ProbationaryStatus.FINALLY_EXTENDED)).thenReturn(false);
+
+        probationNotificationService.onStatusChanged(new ProbationaryStatusChangedEvent(ShelterType.CAT, 2, 20L,
+                ProbationaryStatus.EXTENDED, 5));
+
+        Mockito.verifyNoInteractions(outboxService);
+    }
+
+    @Test
+    public void statusesWithoutNotificationAreIgnored() {
+        probationNotificationService.onStatusChanged(new ProbationaryStatusChangedEvent(ShelterType.DOG, 1, 10L,
+                ProbationaryStatus.ACTIVE, 0));
+        probationNotificationService.onStatusChanged(new ProbationaryStatusChangedEvent(ShelterType.DOG, 1, 10L,
+                ProbationaryStatus.EXTENDED, 0));
+
+        Mockito.verifyNoInteractions(dogOwnerService, catOwnerService, outboxService);
+    }
+
+    @Test
+    public void outboxIsDrainedAfterCommit() {
+        probationNotificationService.afterStatusChanged(new ProbationaryStatusChangedEvent(ShelterType.DOG, 1, 10L,
+                ProbationaryStatus.PASSED, 0));
+
+        Mockito.verify(ownerRegistry).invalidate(10L);
+        Mockito.verify(taskScheduler).schedule(any(Runnable.class), any(Instant.class));
+    }
+
+    @Test
+    public void pendingOwnersAreNotifiedOnStartup() {
+        when(dogOwnerService.transitionProbationaryStatus(any(), any())).thenReturn(List.of());
+        when(catOwnerService.transitionProbationaryStatus(any(), any())).thenReturn(List.of());
+        when(dogOwnerService.transitionProbationaryStatus(ProbationaryStatus.PASSED,
+                ProbationaryStatus.FINALLY_PASSED)).thenReturn(List.of(transition(1L, 0)));
+        when(catOwnerService.transitionProbationaryStatus(ProbationaryStatus.EXTENDED,
+                ProbationaryStatus.FINALLY_EXTENDED)).thenReturn(List.of(transition(2L, 7)));
+
+        probationNotificationService.notifyPendingOwners();
+
+        Mockito.verify(outboxService).enqueue(1L, "Добрый день, поздравляем ваш испытательный срок окончен");
+        Mockito.verify(outboxService).enqueue(2L, "Дорогой усыновитель, ваш испытаельный срок продлен на 7 дней");
+        Mockito.verify(outboxService, Mockito.times(2)).enqueue(anyLong(), anyString());
+    }
+
+    private static StatusTransition transition(Long chatId, Integer periodExtend) {
+        return new StatusTransition() {
+            @Override
+            public Long getChatId() {
+                return chatId;
+            }
+
+            @Override
+            public String getName() {
+                return "Ivan";
+            }
+
+            @Override
+            public Integer getPeriodExtend() {
+                return periodExtend;
+            }
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package sky.pro.telegrambot2.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import sky.pro.telegrambot2.enam.ExportFormat;
+import sky.pro.telegrambot2.model.ReportExportRow;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+class ReportExportWriterTest {
+    private final ReportExportWriter writer = new ReportExportWriter(new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+
+    @Test
+    public void csvEscapesSeparatorsAndQuotes() throws Exception {
+        ReportExportRow row = new ReportExportRow(1, 2, "Alex", LocalDateTime.of(2023, 5, 1, 12, 0),
+                "Ест, спит \"хорошо\"", null, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(Stream.of(row), ExportFormat.CSV, out);
+        Assertions.assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "id,owner_id,owner_name,date,text,photo_size,photo_url\n" +
+                        "1,2,Alex,2023-05-01T12:00,\"Ест, спит \"\"хорошо\"\"\",,\n");
+    }
+
+    @Test
+    public void ndjsonWritesOneObjectPerLine() throws Exception {
+        ReportExportRow first = new ReportExportRow(1, 2, "Alex", null, "first", null, null);
+        ReportExportRow second = new ReportExportRow(2, 2, "Alex", null, "second", 10L, "abcdef");
+        second.setPhotoUrl("/dog-reports/photo/2");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(Stream.of(first, second), ExportFormat.NDJSON, out);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        Assertions.assertThat(lines).hasSize(2);
+        Assertions.assertThat(lines[0]).contains("\"text\":\"first\"").doesNotContain("photoKey");
+        Assertions.assertThat(lines[1]).contains("\"photoUrl\":\"/dog-reports/photo/2\"");
+    }
+}
@@ -0,0 +1,85 @@
+package sky.pro.telegrambot2.service;
+
+import com.pengrad.telegrambot.model.Message;
+import com.pengrad.telegrambot.model.PhotoSize;
+import com.pengrad.telegrambot.request.SendPhoto;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sky.pro.telegrambot2.model.StaticMedia;
+import sky.pro.telegrambot2.repository.StaticMediaRepository;
+import sky.pro.telegrambot2.sender.MessageSender;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StaticMediaServiceTest {
+    @Mock
+    private StaticMediaRepository staticMediaRepository;
+    @Mock
+    private MessageSender messageSender;
+
+    private StaticMediaService staticMediaService;
+
+    @BeforeEach
+    public void setUp() {
+        staticMediaService = new StaticMediaService(staticMediaRepository, messageSender);
+    }
+
+    @Test
+    public void photoIsUploadedOnceAndThenSentByFileId() {
+        when(staticMediaRepository.findById("drivingDirection.jpg")).thenReturn(Optional.empty());
+        SendResponse response = uploaded("file-1");
+        when(messageSender.send(any(SendPhoto.class))).thenReturn(CompletableFuture.completedFuture(response));
+
+        staticMediaService.sendPhoto(1L, "drivingDirection.jpg");
+        staticMediaService.sendPhoto(2L, "drivingDirection.jpg");
+
+        ArgumentCaptor<SendPhoto> captor = ArgumentCaptor.forClass(SendPhoto.class);
+        Mockito.verify(messageSender, Mockito.times(2)).send(captor.capture());
+        Assertions.assertThat(captor.getAllValues().get(0).getParameters().get("photo")).isInstanceOf(byte[].class);
+        Assertions.assertThat(captor.getAllValues().get(1).getParameters().get("photo")).isEqualTo("file-1");
+        ArgumentCaptor<StaticMedia> saved = ArgumentCaptor.forClass(StaticMedia.class);
+        Mockito.verify(staticMediaRepository).save(saved.capture());
+        Assertions.assertThat(saved.getValue().getFileId()).isEqualTo("file-1");
+        Mockito.verify(staticMediaRepository, Mockito.times(1)).findById("drivingDirection.jpg");
+    }
+
+    @Test
+    public void storedFileIdIsIgnoredWhenImageChanged() {
+        StaticMedia stored = new StaticMedia();
+        stored.setResourceName("drivingDirection.jpg");
+        stored.setSha256("stale");
+        stored.setFileId("old-file");
+        when(staticMediaRepository.findById("drivingDirection.jpg")).thenReturn(Optional.of(stored));
+        SendResponse response = uploaded("file-2");
+        when(messageSender.send(any(SendPhoto.class))).thenReturn(CompletableFuture.completedFuture(response));
+
+        staticMediaService.sendPhoto(1L, "drivingDirection.jpg");
+
+        ArgumentCaptor<SendPhoto> captor = ArgumentCaptor.forClass(SendPhoto.class);
+        Mockito.verify(messageSender).send(captor.capture());
+        Assertions.assertThat(captor.getValue().getParameters().get("photo")).isInstanceOf(byte[].class);
+    }
+
+    private SendResponse uploaded(String fileId) {
+        PhotoSize photoSize = Mockito.mock(PhotoSize.class);
+        when(photoSize.fileId()).thenReturn(fileId);
+        Message message = Mockito.mock(Message.class);
+        when(message.photo()).thenReturn(new PhotoSize[]{photoSize});
+        SendResponse response = Mockito.mock(SendResponse.class);
+        when(response.isOk()).thenReturn(true);
+        when(response.message()).thenReturn(message);
+        return response;
+    }
+}
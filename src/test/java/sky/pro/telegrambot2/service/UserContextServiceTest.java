@@ -0,0 +1,74 @@
+package sky.pro.telegrambot2.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sky.pro.telegrambot2.model.UserContext;
+import sky.pro.telegrambot2.repository.UserContextRepository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserContextServiceTest {
+    @Mock
+    private UserContextRepository userContextRepository;
+
+    private UserContextService userContextService;
+
+    @BeforeEach
+    public void setUp() {
+        userContextService = new UserContextService(userContextRepository, new SimpleMeterRegistry(),
+                100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    public void contextIsLoadedOnce() {
+        UserContext userContext = new UserContext();
+        userContext.setChatId(123L);
+        userContext.setDogShelter(true);
+        when(userContextRepository.findByChatId(123L)).thenReturn(Optional.of(userContext));
+        Assertions.assertThat(userContextService.getContext(123L).isDogShelter()).isTrue();
+        Assertions.assertThat(userContextService.getContext(123L).isDogShelter()).isTrue();
+        Mockito.verify(userContextRepository, Mockito.times(1)).findByChatId(123L);
+    }
+
+    @Test
+    public void unknownUserGetsEmptyContext() {
+        when(userContextRepository.findByChatId(123L)).thenReturn(Optional.empty());
+        UserContext userContext = userContextService.getContext(123L);
+        Assertions.assertThat(userContext.isDogShelter()).isFalse();
+        Assertions.assertThat(userContext.isCatShelter()).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void changesAreCoalescedUntilFlush() {
+        when(userContextRepository.findByChatId(123L)).thenReturn(Optional.empty());
+        userContextService.chooseDogShelter(123L);
+        userContextService.chooseCatShelter(123L);
+        userContextService.chooseCatShelter(123L);
+        Assertions.assertThat(userContextService.getContext(123L).isCatShelter()).isTrue();
+        Mockito.verify(userContextRepository, Mockito.never()).upsertAll(anyCollection());
+
+        userContextService.flush();
+        ArgumentCaptor<Collection<UserContext>> captor = ArgumentCaptor.forClass(Collection.class);
+        Mockito.verify(userContextRepository).upsertAll(captor.capture());
+        Assertions.assertThat(captor.getValue()).hasSize(1);
+        Assertions.assertThat(captor.getValue().iterator().next().isCatShelter()).isTrue();
+        Assertions.assertThat(captor.getValue().iterator().next().isDogShelter()).isFalse();
+
+        userContextService.flush();
+        Mockito.verify(userContextRepository, Mockito.times(1)).upsertAll(anyCollection());
+    }
+}
@@ -0,0 +1,49 @@
+package sky.pro.telegrambot2.storage;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+class FileSystemBlobStoreTest {
+    private static final String KEY = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @TempDir
+    Path root;
+
+    @Test
+    public void putAndOpen() throws Exception {
+        FileSystemBlobStore blobStore = new FileSystemBlobStore(root.toString());
+        byte[] content = "test".getBytes();
+        blobStore.put(KEY, new ByteArrayInputStream(content), content.length, "image/jpeg");
+        Assertions.assertThat(blobStore.exists(KEY)).isTrue();
+        try (InputStream in = blobStore.open(KEY)) {
+            Assertions.assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+        Assertions.assertThat(root.resolve("9f").resolve("86").resolve(KEY)).exists();
+    }
+
+    @Test
+    public void samePhotoIsStoredOnce() throws Exception {
+        FileSystemBlobStore blobStore = new FileSystemBlobStore(root.toString());
+        byte[] content = "test".getBytes();
+        blobStore.put(KEY, new ByteArrayInputStream(content), content.length, "image/jpeg");
+        blobStore.put(KEY, new ByteArrayInputStream(content), content.length, "image/jpeg");
+        try (Stream<Path> files = Files.walk(root)) {
+            Assertions.assertThat(files.filter(Files::isRegularFile).count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void openMissingKey() {
+        FileSystemBlobStore blobStore = new FileSystemBlobStore(root.toString());
+        Assertions.assertThat(blobStore.exists(KEY)).isFalse();
+        Assertions.assertThatThrownBy(() -> blobStore.open(KEY)).isInstanceOf(FileNotFoundException.class);
+    }
+}
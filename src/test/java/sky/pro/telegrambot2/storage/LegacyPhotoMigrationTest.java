@@ -0,0 +1,39 @@
+package sky.pro.telegrambot2.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LegacyPhotoMigrationTest {
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private BlobStore blobStore;
+
+    @Test
+    public void brokenPhotoIsLeftInPlaceAndMigrationContinues() throws Exception {
+        when(jdbcTemplate.queryForList(anyString(), anyInt(), anyInt())).thenAnswer(invocation ->
+                invocation.<String>getArgument(0).contains("dog_owner_reports") && invocation.<Integer>getArgument(1) == 0
+                        ? List.of(Map.of("id", 1, "photo_report", new byte[]{1}),
+                        Map.of("id", 2, "photo_report", new byte[]{2}))
+                        : List.of());
+        doThrow(new IOException("disk full")).doNothing()
+                .when(blobStore).put(anyString(), any(InputStream.class), anyLong(), anyString());
+
+        new LegacyPhotoMigration(jdbcTemplate, blobStore, true, 20).run(null);
+
+        verify(jdbcTemplate).update(contains("dog_owner_reports"), anyString(), eq(1L), anyString(), eq(2));
+        verify(jdbcTemplate, never()).update(anyString(), anyString(), anyLong(), anyString(), eq(1));
+    }
+}
@@ -0,0 +1,63 @@
+package sky.pro.telegrambot2.timer;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class HierarchicalTimingWheelTest {
+    private static final long TICK = 1000;
+    private static final int WHEEL_SIZE = 8;
+
+    @Test
+    public void taskFiresOnItsTick() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, WHEEL_SIZE, 0);
+        wheel.schedule("remind", 3 * TICK);
+        Assertions.assertThat(wheel.advance(2 * TICK)).isEmpty();
+        Assertions.assertThat(wheel.advance(3 * TICK)).containsExactly("remind");
+        Assertions.assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void deadlineIsRoundedUpToTick() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, WHEEL_SIZE, 0);
+        wheel.schedule("remind", 2 * TICK + 1);
+        Assertions.assertThat(wheel.advance(2 * TICK + 999)).isEmpty();
+        Assertions.assertThat(wheel.advance(3 * TICK)).containsExactly("remind");
+    }
+
+    @Test
+    public void farTasksCascadeThroughLevels() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK, WHEEL_SIZE, 0);
+        long[] deadlines = {7, 8, 9, 63, 64, 65, 511, 512, 1000, 4097};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline * TICK);
+        }
+        List<Long> fired = new ArrayList<>();
+        for (long tick = 1; tick <= 5000; tick++) {
+            for (Long task : wheel.advance(tick * TICK)) {
+                Assertions.assertThat(task).isEqualTo(tick);
+                fired.add(task);
+            }
+        }
+        Assertions.assertThat(fired).containsExactly(7L, 8L, 9L, 63L, 64L, 65L, 511L, 512L, 1000L, 4097L);
+    }
+
+    @Test
+    public void cancelledTaskDoesNotFire() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, WHEEL_SIZE, 0);
+        HierarchicalTimingWheel.Timeout<String> timeout = wheel.schedule("remind", 100 * TICK);
+        wheel.schedule("escalate", 200 * TICK);
+        timeout.cancel();
+        Assertions.assertThat(wheel.advance(300 * TICK)).containsExactly("escalate");
+        Assertions.assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void overdueTaskFiresOnNextAdvance() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, WHEEL_SIZE, 10 * TICK);
+        wheel.schedule("remind", 5 * TICK);
+        Assertions.assertThat(wheel.advance(10 * TICK)).containsExactly("remind");
+    }
+}